@@ -16,7 +16,16 @@
 package com.yanzhenjie.album;
 
 import android.content.Context;
+import android.support.annotation.Nullable;
 
+import com.yanzhenjie.album.app.album.data.BitmapPool;
+import com.yanzhenjie.album.app.album.data.MediaIndex;
+import com.yanzhenjie.album.app.album.data.ThumbnailCache;
+import com.yanzhenjie.album.app.album.data.ThumbnailLoader;
+import com.yanzhenjie.album.app.album.data.ThumbnailPack;
+import com.yanzhenjie.album.util.AlbumUtils;
+
+import java.io.File;
 import java.util.Locale;
 
 /**
@@ -34,10 +43,25 @@ public class AlbumConfig {
 
     private AlbumLoader mLoader;
     private Locale mLocale;
+    private boolean isMediaCache;
+    private long mThumbnailCacheSize;
+    private ThumbnailTier mGridThumbnailTier;
+    private ThumbnailTier mPreviewThumbnailTier;
+    private ThumbnailTier mResultThumbnailTier;
+
+    private MediaIndex mMediaIndex;
+    private ThumbnailCache mThumbnailCache;
+    private ThumbnailPack mThumbnailPack;
+    private BitmapPool mBitmapPool;
 
     private AlbumConfig(Builder builder) {
-        this.mLoader = builder.mLoader == null ? AlbumLoader.DEFAULT : builder.mLoader;
+        this.mLoader = builder.mLoader == null ? new ThumbnailLoader() : builder.mLoader;
         this.mLocale = builder.mLocale == null ? Locale.getDefault() : builder.mLocale;
+        this.isMediaCache = builder.isMediaCache;
+        this.mThumbnailCacheSize = builder.mThumbnailCacheSize;
+        this.mGridThumbnailTier = builder.mGridThumbnailTier;
+        this.mPreviewThumbnailTier = builder.mPreviewThumbnailTier;
+        this.mResultThumbnailTier = builder.mResultThumbnailTier;
     }
 
     /**
@@ -58,16 +82,125 @@ public class AlbumConfig {
         return mLocale;
     }
 
+    /**
+     * Get the index of the media library. The same index is shared by every album opened in the process,
+     * it is only reconciled with the media provider after the provider has changed.
+     *
+     * @param context context.
+     * @return {@link MediaIndex}, or null if the media cache is turned off.
+     */
+    @Nullable
+    public MediaIndex getMediaIndex(Context context) {
+        if (!isMediaCache) return null;
+
+        synchronized (this) {
+            if (mMediaIndex == null) {
+                mMediaIndex = new MediaIndex(context);
+                mMediaIndex.observe();
+            }
+            return mMediaIndex;
+        }
+    }
+
+    /**
+     * Get the disk budget of the thumbnails, it is split evenly between the thumbnail cache and the thumbnail pack.
+     *
+     * @return the budget in bytes.
+     */
+    public long getThumbnailCacheSize() {
+        return mThumbnailCacheSize;
+    }
+
+    /**
+     * Get the tier of the thumbnails in the cells of the album grid.
+     *
+     * @return {@link ThumbnailTier}.
+     */
+    public ThumbnailTier getGridThumbnailTier() {
+        return mGridThumbnailTier;
+    }
+
+    /**
+     * Get the tier of the thumbnails in the pages of the preview.
+     *
+     * @return {@link ThumbnailTier}.
+     */
+    public ThumbnailTier getPreviewThumbnailTier() {
+        return mPreviewThumbnailTier;
+    }
+
+    /**
+     * Get the tier of the thumbnails delivered with the results.
+     *
+     * @return {@link ThumbnailTier}.
+     */
+    public ThumbnailTier getResultThumbnailTier() {
+        return mResultThumbnailTier;
+    }
+
+    /**
+     * Get the disk cache of the thumbnails delivered with the results, it is shared by every album
+     * and keeps to half of the thumbnail budget.
+     *
+     * @param context context.
+     * @return {@link ThumbnailCache}.
+     */
+    public ThumbnailCache getThumbnailCache(Context context) {
+        synchronized (this) {
+            if (mThumbnailCache == null) {
+                mThumbnailCache = new ThumbnailCache(AlbumUtils.getAlbumRootPath(context), mThumbnailCacheSize / 2);
+            }
+            return mThumbnailCache;
+        }
+    }
+
+    /**
+     * Get the pack of the thumbnails which are read in the process, it keeps to the other half of the thumbnail budget.
+     *
+     * @param context context.
+     * @return {@link ThumbnailPack}.
+     */
+    public ThumbnailPack getThumbnailPack(Context context) {
+        synchronized (this) {
+            if (mThumbnailPack == null) {
+                File packFile = new File(AlbumUtils.getAlbumRootPath(context), "thumbnail.pack");
+                mThumbnailPack = new ThumbnailPack(packFile, mThumbnailCacheSize - mThumbnailCacheSize / 2);
+            }
+            return mThumbnailPack;
+        }
+    }
+
+    /**
+     * Get the pool of the bitmaps which are reused by the decodes, it is shared by every album
+     * and its budget follows the memory class of the application.
+     *
+     * @param context context.
+     * @return {@link BitmapPool}.
+     */
+    public BitmapPool getBitmapPool(Context context) {
+        synchronized (this) {
+            if (mBitmapPool == null) {
+                mBitmapPool = BitmapPool.create(context.getApplicationContext());
+            }
+            return mBitmapPool;
+        }
+    }
+
     public static final class Builder {
 
         private AlbumLoader mLoader;
         private Locale mLocale;
+        private boolean isMediaCache = true;
+        private long mThumbnailCacheSize = 50 * 1024 * 1024;
+        private ThumbnailTier mGridThumbnailTier = ThumbnailTier.GRID;
+        private ThumbnailTier mPreviewThumbnailTier = ThumbnailTier.PREVIEW;
+        private ThumbnailTier mResultThumbnailTier = ThumbnailTier.RESULT;
 
         private Builder(Context context) {
         }
 
         /**
-         * Set album loader.
+         * Set album loader, default is {@link ThumbnailLoader}.
          *
          * @param loader {@link AlbumLoader}.
          * @return {@link Builder}.
@@ -88,6 +221,63 @@ public class AlbumConfig {
             return this;
         }
 
+        /**
+         * Share the index of the media library between albums, default is true.
+         *
+         * @param mediaCache true to only read the provider after it has changed, otherwise every album scans it.
+         * @return {@link Builder}.
+         */
+        public Builder setMediaCache(boolean mediaCache) {
+            this.isMediaCache = mediaCache;
+            return this;
+        }
+
+        /**
+         * Set the disk budget of the thumbnails, the least recently used thumbnails are deleted
+         * when it is exceeded. Half of it is for the thumbnails delivered with the results,
+         * the other half for the thumbnails shown by the album. Default is 50MB.
+         *
+         * @param size the budget in bytes.
+         * @return {@link Builder}.
+         */
+        public Builder setThumbnailCacheSize(long size) {
+            this.mThumbnailCacheSize = size;
+            return this;
+        }
+
+        /**
+         * Set the tier of the thumbnails in the cells of the album grid, default is {@link ThumbnailTier#GRID}.
+         *
+         * @param tier {@link ThumbnailTier}.
+         * @return {@link Builder}.
+         */
+        public Builder setGridThumbnailTier(ThumbnailTier tier) {
+            this.mGridThumbnailTier = tier;
+            return this;
+        }
+
+        /**
+         * Set the tier of the thumbnails in the pages of the preview, default is {@link ThumbnailTier#PREVIEW}.
+         *
+         * @param tier {@link ThumbnailTier}.
+         * @return {@link Builder}.
+         */
+        public Builder setPreviewThumbnailTier(ThumbnailTier tier) {
+            this.mPreviewThumbnailTier = tier;
+            return this;
+        }
+
+        /**
+         * Set the tier of the thumbnails delivered with the results, default is {@link ThumbnailTier#RESULT}.
+         *
+         * @param tier {@link ThumbnailTier}.
+         * @return {@link Builder}.
+         */
+        public Builder setResultThumbnailTier(ThumbnailTier tier) {
+            this.mResultThumbnailTier = tier;
+            return this;
+        }
+
         /**
          * Create AlbumConfig.
          *
@@ -64,10 +64,26 @@ public class AlbumFile implements Parcelable, Comparable<AlbumFile> {
      * Size.
      */
     private long mSize;
+    /**
+     * Last modified time in seconds, 0 if it is unknown.
+     */
+    private long mDateModified;
     /**
      * Duration.
      */
     private long mDuration;
+    /**
+     * Width in pixels, 0 if it is unknown.
+     */
+    private int mWidth;
+    /**
+     * Height in pixels, 0 if it is unknown.
+     */
+    private int mHeight;
+    /**
+     * Clockwise rotation in degrees, only known with the dimensions.
+     */
+    private int mOrientation;
     /**
      * Thumb path.
      */
@@ -179,6 +195,41 @@ public class AlbumFile implements Parcelable, Comparable<AlbumFile> {
         mDuration = duration;
     }
 
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public void setWidth(int width) {
+        mWidth = width;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public void setHeight(int height) {
+        mHeight = height;
+    }
+
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    public void setOrientation(int orientation) {
+        mOrientation = orientation;
+    }
+
+    /**
+     * Get the last modified time in seconds, as the media provider has it. 0 if it is unknown.
+     */
+    public long getDateModified() {
+        return mDateModified;
+    }
+
+    public void setDateModified(long dateModified) {
+        mDateModified = dateModified;
+    }
+
     public String getThumbPath() {
         return mThumbPath;
     }
@@ -233,6 +284,10 @@ public class AlbumFile implements Parcelable, Comparable<AlbumFile> {
         mMediaType = in.readInt();
         isChecked = in.readByte() != 0;
         isDisableReason = in.readString();
+        mWidth = in.readInt();
+        mHeight = in.readInt();
+        mOrientation = in.readInt();
+        mDateModified = in.readLong();
     }
 
     @Override
@@ -249,6 +304,10 @@ public class AlbumFile implements Parcelable, Comparable<AlbumFile> {
         dest.writeInt(mMediaType);
         dest.writeByte((byte) (isChecked ? 1 : 0));
         dest.writeString(isDisableReason);
+        dest.writeInt(mWidth);
+        dest.writeInt(mHeight);
+        dest.writeInt(mOrientation);
+        dest.writeLong(mDateModified);
     }
 
     @Override
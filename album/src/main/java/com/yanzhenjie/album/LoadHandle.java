@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album;
+
+/**
+ * <p>A load started by a {@link SizedAlbumLoader}, the album cancels it once the view no longer shows the file,
+ * such as when a cell of the grid is recycled.</p>
+ */
+public interface LoadHandle {
+
+    /**
+     * A load which can not be cancelled.
+     */
+    LoadHandle NONE = new LoadHandle() {
+        @Override
+        public void cancel() {
+        }
+    };
+
+    /**
+     * Cancel the load if it is not complete, the view keeps what it shows.
+     */
+    void cancel();
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album;
+
+import android.support.annotation.IntDef;
+import android.widget.ImageView;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * <p>The size, usage and priority of a load, see {@link SizedAlbumLoader}.</p>
+ */
+public class LoadRequest {
+
+    /**
+     * A cell of the album grid.
+     */
+    public static final int USAGE_GRID = 1;
+    /**
+     * The cover of a folder in the folder list.
+     */
+    public static final int USAGE_FOLDER_COVER = 2;
+    /**
+     * A page of the preview, about as large as the screen.
+     */
+    public static final int USAGE_PREVIEW = 3;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({USAGE_GRID, USAGE_FOLDER_COVER, USAGE_PREVIEW})
+    public @interface Usage {
+    }
+
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH = 2;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({PRIORITY_LOW, PRIORITY_NORMAL, PRIORITY_HIGH})
+    public @interface Priority {
+    }
+
+    /**
+     * Create a new builder.
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mUsage;
+    private final int mPriority;
+
+    private LoadRequest(Builder builder) {
+        this.mWidth = builder.mWidth;
+        this.mHeight = builder.mHeight;
+        this.mUsage = builder.mUsage;
+        this.mPriority = builder.mPriority;
+    }
+
+    /**
+     * Get the width of the view in pixels, 0 if it is not known.
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * Get the height of the view in pixels, 0 if it is not known.
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Usage
+    public int getUsage() {
+        return mUsage;
+    }
+
+    @Priority
+    public int getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Load the file with the configured loader, a loader which is not a {@link SizedAlbumLoader} is only given the file.
+     *
+     * @param imageView {@link ImageView}.
+     * @param albumFile the media object may be a picture or video.
+     * @return the handle to cancel the load, {@link LoadHandle#NONE} for a loader which can not cancel.
+     */
+    public LoadHandle load(ImageView imageView, AlbumFile albumFile) {
+        AlbumLoader loader = Album.getAlbumConfig().getAlbumLoader();
+        if (loader instanceof SizedAlbumLoader) {
+            return ((SizedAlbumLoader) loader).load(imageView, albumFile, this);
+        }
+        loader.load(imageView, albumFile);
+        return LoadHandle.NONE;
+    }
+
+    /**
+     * Load the file with the configured loader, a loader which is not a {@link SizedAlbumLoader} is only given the url.
+     *
+     * @param imageView {@link ImageView}.
+     * @param url       The url of the file, local path or remote path.
+     * @return the handle to cancel the load, {@link LoadHandle#NONE} for a loader which can not cancel.
+     */
+    public LoadHandle load(ImageView imageView, String url) {
+        AlbumLoader loader = Album.getAlbumConfig().getAlbumLoader();
+        if (loader instanceof SizedAlbumLoader) {
+            return ((SizedAlbumLoader) loader).load(imageView, url, this);
+        }
+        loader.load(imageView, url);
+        return LoadHandle.NONE;
+    }
+
+    public static final class Builder {
+
+        private int mWidth;
+        private int mHeight;
+        private int mUsage = USAGE_GRID;
+        private int mPriority = PRIORITY_NORMAL;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the size of the view, default is 0, the size is not known.
+         *
+         * @param width  the width in pixels.
+         * @param height the height in pixels.
+         * @return {@link Builder}.
+         */
+        public Builder size(int width, int height) {
+            if (width < 0 || height < 0) throw new IllegalArgumentException("The size can not be negative.");
+            this.mWidth = width;
+            this.mHeight = height;
+            return this;
+        }
+
+        /**
+         * Set the usage of the view, default is {@link #USAGE_GRID}.
+         *
+         * @param usage {@link #USAGE_GRID}, {@link #USAGE_FOLDER_COVER} or {@link #USAGE_PREVIEW}.
+         * @return {@link Builder}.
+         */
+        public Builder usage(@Usage int usage) {
+            this.mUsage = usage;
+            return this;
+        }
+
+        /**
+         * Set the priority of the load, default is {@link #PRIORITY_NORMAL}.
+         *
+         * @param priority {@link #PRIORITY_LOW}, {@link #PRIORITY_NORMAL} or {@link #PRIORITY_HIGH}.
+         * @return {@link Builder}.
+         */
+        public Builder priority(@Priority int priority) {
+            this.mPriority = priority;
+            return this;
+        }
+
+        /**
+         * Create LoadRequest.
+         *
+         * @return {@link LoadRequest}.
+         */
+        public LoadRequest build() {
+            return new LoadRequest(this);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album;
+
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>A declarative filter of the files. Unlike {@link Filter}, it is applied by the media provider,
+ * so the files which are not displayed are never read.</p>
+ */
+public class MediaFilter {
+
+    /**
+     * Create a new builder.
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private final long mMinSize;
+    private final long mMaxSize;
+    private final List<String> mAllowMimeTypes;
+    private final List<String> mDenyMimeTypes;
+    private final long mMinDuration;
+    private final long mMaxDuration;
+
+    private MediaFilter(Builder builder) {
+        this.mMinSize = builder.mMinSize;
+        this.mMaxSize = builder.mMaxSize;
+        this.mAllowMimeTypes = builder.mAllowMimeTypes;
+        this.mDenyMimeTypes = builder.mDenyMimeTypes;
+        this.mMinDuration = builder.mMinDuration;
+        this.mMaxDuration = builder.mMaxDuration;
+    }
+
+    /**
+     * Get the minimum size in bytes, 0 means no minimum.
+     */
+    public long getMinSize() {
+        return mMinSize;
+    }
+
+    /**
+     * Get the maximum size in bytes, {@link Long#MAX_VALUE} means no maximum.
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Get the MIME types which are allowed, empty means all of them.
+     */
+    public List<String> getAllowMimeTypes() {
+        return mAllowMimeTypes;
+    }
+
+    /**
+     * Get the MIME types which are denied.
+     */
+    public List<String> getDenyMimeTypes() {
+        return mDenyMimeTypes;
+    }
+
+    /**
+     * Get the minimum duration of the videos in milliseconds, 0 means no minimum.
+     */
+    public long getMinDuration() {
+        return mMinDuration;
+    }
+
+    /**
+     * Get the maximum duration of the videos in milliseconds, {@link Long#MAX_VALUE} means no maximum.
+     */
+    public long getMaxDuration() {
+        return mMaxDuration;
+    }
+
+    /**
+     * Filter the file, the same rule as the provider applies.
+     *
+     * @param albumFile file.
+     * @return filter returns true, otherwise false.
+     */
+    public boolean filter(AlbumFile albumFile) {
+        long size = albumFile.getSize();
+        if (size < mMinSize || size > mMaxSize) return true;
+
+        String mimeType = albumFile.getMimeType();
+        if (!mAllowMimeTypes.isEmpty() && !mAllowMimeTypes.contains(mimeType)) return true;
+        if (mimeType != null && mDenyMimeTypes.contains(mimeType)) return true;
+
+        if (albumFile.getMediaType() == AlbumFile.TYPE_VIDEO) {
+            long duration = albumFile.getDuration();
+            if (duration < mMinDuration || duration > mMaxDuration) return true;
+        }
+        return false;
+    }
+
+    public static final class Builder {
+
+        private long mMinSize;
+        private long mMaxSize = Long.MAX_VALUE;
+        private List<String> mAllowMimeTypes = Collections.emptyList();
+        private List<String> mDenyMimeTypes = Collections.emptyList();
+        private long mMinDuration;
+        private long mMaxDuration = Long.MAX_VALUE;
+
+        private Builder() {
+        }
+
+        /**
+         * Only keep the files whose size is in the range.
+         *
+         * @param minSize the minimum size in bytes, inclusive.
+         * @param maxSize the maximum size in bytes, inclusive.
+         * @return {@link Builder}.
+         */
+        public Builder sizeRange(long minSize, long maxSize) {
+            this.mMinSize = minSize;
+            this.mMaxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * Only keep the files of these MIME types.
+         *
+         * @param mimeTypes MIME types, such as {@code image/jpeg}.
+         * @return {@link Builder}.
+         */
+        public Builder allowMimeTypes(String... mimeTypes) {
+            this.mAllowMimeTypes = toList(mimeTypes);
+            return this;
+        }
+
+        /**
+         * Drop the files of these MIME types.
+         *
+         * @param mimeTypes MIME types, such as {@code image/gif}.
+         * @return {@link Builder}.
+         */
+        public Builder denyMimeTypes(String... mimeTypes) {
+            this.mDenyMimeTypes = toList(mimeTypes);
+            return this;
+        }
+
+        /**
+         * Only keep the videos whose duration is in the range, the pictures are not affected.
+         *
+         * @param minDuration the minimum duration in milliseconds, inclusive.
+         * @param maxDuration the maximum duration in milliseconds, inclusive.
+         * @return {@link Builder}.
+         */
+        public Builder durationRange(long minDuration, long maxDuration) {
+            this.mMinDuration = minDuration;
+            this.mMaxDuration = maxDuration;
+            return this;
+        }
+
+        private static List<String> toList(@Nullable String... mimeTypes) {
+            if (mimeTypes == null || mimeTypes.length == 0) return Collections.emptyList();
+            for (String mimeType : mimeTypes) {
+                if (mimeType == null || mimeType.length() == 0) throw new IllegalArgumentException("The MIME type can not be empty.");
+            }
+            return Collections.unmodifiableList(Arrays.asList(mimeTypes.clone()));
+        }
+
+        /**
+         * Create MediaFilter.
+         *
+         * @return {@link MediaFilter}.
+         */
+        public MediaFilter build() {
+            return new MediaFilter(this);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album;
+
+import android.widget.ImageView;
+
+/**
+ * <p>An {@link AlbumLoader} which is told the size, the usage and the priority of each load,
+ * so it can decode the files no larger than the views. The album calls these methods when the configured loader
+ * implements this interface, and the methods of {@link AlbumLoader} otherwise.</p>
+ */
+public interface SizedAlbumLoader extends AlbumLoader {
+
+    /**
+     * Load a preview of the album file.
+     *
+     * @param imageView {@link ImageView}.
+     * @param albumFile the media object may be a picture or video.
+     * @param request   the size, usage and priority of the load.
+     * @return the handle to cancel the load, or {@link LoadHandle#NONE}.
+     */
+    LoadHandle load(ImageView imageView, AlbumFile albumFile, LoadRequest request);
+
+    /**
+     * Load thumbnails of pictures or videos, either local file or remote file.
+     *
+     * @param imageView {@link ImageView}.
+     * @param url       The url of the file, local path or remote path.
+     * @param request   the size, usage and priority of the load.
+     * @return the handle to cancel the load, or {@link LoadHandle#NONE}.
+     */
+    LoadHandle load(ImageView imageView, String url, LoadRequest request);
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album;
+
+import android.graphics.Bitmap;
+
+/**
+ * <p>The size, encoding and decode config of a kind of thumbnails, so each use gets the thumbnails it needs
+ * rather than one size for everything. The tiers are set in {@link AlbumConfig}.</p>
+ */
+public class ThumbnailTier {
+
+    /**
+     * The cells of the album grid, small and opaque. A cell does not need the quality of the decoded image,
+     * the embedded thumbnails of half its size are enough.
+     */
+    public static final ThumbnailTier GRID = newBuilder()
+            .size(180)
+            .format(Bitmap.CompressFormat.WEBP)
+            .quality(75)
+            .config(Bitmap.Config.RGB_565)
+            .embeddedThumbnailSize(90)
+            .build();
+
+    /**
+     * The pages of the preview.
+     */
+    public static final ThumbnailTier PREVIEW = newBuilder()
+            .size(720)
+            .format(Bitmap.CompressFormat.JPEG)
+            .quality(85)
+            .config(Bitmap.Config.ARGB_8888)
+            .build();
+
+    /**
+     * The thumbnails delivered with the results, see {@link AlbumFile#getThumbPath()}.
+     */
+    public static final ThumbnailTier RESULT = newBuilder()
+            .size(360)
+            .format(Bitmap.CompressFormat.JPEG)
+            .quality(80)
+            .config(Bitmap.Config.ARGB_8888)
+            .build();
+
+    /**
+     * Create a new builder.
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    private final int mSize;
+    private final Bitmap.CompressFormat mFormat;
+    private final int mQuality;
+    private final Bitmap.Config mConfig;
+    private final int mEmbeddedThumbnailSize;
+
+    private ThumbnailTier(Builder builder) {
+        this.mSize = builder.mSize;
+        this.mFormat = builder.mFormat;
+        this.mQuality = builder.mQuality;
+        this.mConfig = builder.mConfig;
+        this.mEmbeddedThumbnailSize = builder.mEmbeddedThumbnailSize;
+    }
+
+    /**
+     * Get the shorter side of the thumbnails in pixels.
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Get the encoder of the thumbnails.
+     */
+    public Bitmap.CompressFormat getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * Get the quality of the encoder, 0 to 100.
+     */
+    public int getQuality() {
+        return mQuality;
+    }
+
+    /**
+     * Get the config which the sources are decoded with.
+     */
+    public Bitmap.Config getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * Get the smallest embedded EXIF thumbnail which is used instead of decoding the image,
+     * by the shorter side in pixels, 0 never uses the embedded thumbnails.
+     */
+    public int getEmbeddedThumbnailSize() {
+        return mEmbeddedThumbnailSize;
+    }
+
+    /**
+     * Get a name of the settings, thumbnails of different tiers have different names.
+     */
+    public String getName() {
+        return Integer.toString(mSize) + 'q' + mQuality + 'f' + mFormat.ordinal() + 'c' + mConfig.ordinal()
+                + 'e' + mEmbeddedThumbnailSize;
+    }
+
+    public static final class Builder {
+
+        private int mSize = 360;
+        private Bitmap.CompressFormat mFormat = Bitmap.CompressFormat.JPEG;
+        private int mQuality = 80;
+        private Bitmap.Config mConfig = Bitmap.Config.ARGB_8888;
+        private int mEmbeddedThumbnailSize;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the shorter side of the thumbnails, default is 360.
+         *
+         * @param size the size in pixels.
+         * @return {@link Builder}.
+         */
+        public Builder size(int size) {
+            if (size <= 0) throw new IllegalArgumentException("The size must be greater than 0.");
+            this.mSize = size;
+            return this;
+        }
+
+        /**
+         * Set the encoder of the thumbnails, default is {@link Bitmap.CompressFormat#JPEG}.
+         *
+         * @param format {@link Bitmap.CompressFormat#JPEG} or {@link Bitmap.CompressFormat#WEBP},
+         *               {@link Bitmap.CompressFormat#PNG} keeps the transparency.
+         * @return {@link Builder}.
+         */
+        public Builder format(Bitmap.CompressFormat format) {
+            this.mFormat = format;
+            return this;
+        }
+
+        /**
+         * Set the quality of the encoder, default is 80.
+         *
+         * @param quality 0 to 100.
+         * @return {@link Builder}.
+         */
+        public Builder quality(int quality) {
+            if (quality < 0 || quality > 100) throw new IllegalArgumentException("The quality must be 0 to 100.");
+            this.mQuality = quality;
+            return this;
+        }
+
+        /**
+         * Set the config which the sources are decoded with, default is {@link Bitmap.Config#ARGB_8888}.
+         * {@link Bitmap.Config#RGB_565} halves the memory of the opaque thumbnails.
+         *
+         * @param config {@link Bitmap.Config}.
+         * @return {@link Builder}.
+         */
+        public Builder config(Bitmap.Config config) {
+            this.mConfig = config;
+            return this;
+        }
+
+        /**
+         * Set the smallest embedded EXIF thumbnail which is used instead of decoding the image, by the shorter side,
+         * default is 0. The embedded thumbnails are rarely larger than 160 pixels, a size above it only
+         * saves the decode of the few images which carry a large one.
+         *
+         * @param size the size in pixels, 0 never uses the embedded thumbnails.
+         * @return {@link Builder}.
+         */
+        public Builder embeddedThumbnailSize(int size) {
+            if (size < 0) throw new IllegalArgumentException("The size must not be less than 0.");
+            this.mEmbeddedThumbnailSize = size;
+            return this;
+        }
+
+        /**
+         * Create ThumbnailTier.
+         *
+         * @return {@link ThumbnailTier}.
+         */
+        public ThumbnailTier build() {
+            return new ThumbnailTier(this);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import android.support.annotation.IntRange;
 import android.view.View;
 
 import com.yanzhenjie.album.Filter;
+import com.yanzhenjie.album.MediaFilter;
 
 /**
  * Created by YanZhenjie on 2017/8/16.
@@ -33,6 +34,7 @@ public abstract class BasicChoiceWrapper<Returner extends BasicChoiceWrapper, Re
 
     Filter<Long> mSizeFilter;
     Filter<String> mMimeTypeFilter;
+    MediaFilter mMediaFilter;
 
     boolean mFilterVisibility = true;
 
@@ -96,6 +98,16 @@ public abstract class BasicChoiceWrapper<Returner extends BasicChoiceWrapper, Re
         return (Returner) this;
     }
 
+    /**
+     * Filter the files by the media provider, they are left out before being read when they are not visible.
+     *
+     * @param filter {@link MediaFilter}.
+     */
+    public Returner filter(MediaFilter filter) {
+        this.mMediaFilter = filter;
+        return (Returner) this;
+    }
+
     /**
      * The visibility of the filtered file.
      *
@@ -72,6 +72,7 @@ public final class VideoMultipleWrapper extends BasicChoiceVideoWrapper<VideoMul
     public void start() {
         AlbumActivity.sSizeFilter = mSizeFilter;
         AlbumActivity.sMimeFilter = mMimeTypeFilter;
+        AlbumActivity.sMediaFilter = mMediaFilter;
         AlbumActivity.sDurationFilter = mDurationFilter;
         AlbumActivity.sResult = mResult;
         AlbumActivity.sCancel = mCancel;
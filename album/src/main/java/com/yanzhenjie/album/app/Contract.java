@@ -58,17 +58,17 @@ public final class Contract {
         /**
          * Try to check item.
          *
-         * @param button   view.
-         * @param position position of item.
+         * @param button    view.
+         * @param albumFile the file of the item.
          */
-        void tryCheckItem(CompoundButton button, int position);
+        void tryCheckItem(CompoundButton button, AlbumFile albumFile);
 
         /**
          * Try to preview item.
          *
-         * @param position position of item.
+         * @param albumFile the file of the item.
          */
-        void tryPreviewItem(int position);
+        void tryPreviewItem(AlbumFile albumFile);
 
         /**
          * Preview the checked items.
@@ -134,9 +134,16 @@ public final class Contract {
         /**
          * Notify item was changed.
          *
-         * @param position position of item.
+         * @param albumFile the file of the item.
          */
-        public abstract void notifyItem(int position);
+        public abstract void notifyItem(AlbumFile albumFile);
+
+        /**
+         * Notify the files of the folder shown were inserted or removed.
+         *
+         * @param albumFolder {@link AlbumFolder}.
+         */
+        public abstract void updateAlbumFolder(AlbumFolder albumFolder);
 
         /**
          * Set checked count.
@@ -37,14 +37,19 @@ import com.yanzhenjie.album.AlbumFile;
 import com.yanzhenjie.album.AlbumFolder;
 import com.yanzhenjie.album.Filter;
 import com.yanzhenjie.album.FilterWithReason;
+import com.yanzhenjie.album.MediaFilter;
 import com.yanzhenjie.album.R;
 import com.yanzhenjie.album.api.widget.Widget;
 import com.yanzhenjie.album.app.Contract;
+import com.yanzhenjie.album.app.album.data.FolderCollector;
 import com.yanzhenjie.album.app.album.data.MediaReadTask;
 import com.yanzhenjie.album.app.album.data.MediaReader;
+import com.yanzhenjie.album.app.album.data.MediaVersions;
+import com.yanzhenjie.album.app.album.data.MediaWatcher;
 import com.yanzhenjie.album.app.album.data.PathConversion;
 import com.yanzhenjie.album.app.album.data.PathConvertTask;
 import com.yanzhenjie.album.app.album.data.ThumbnailBuildTask;
+import com.yanzhenjie.album.app.album.data.ThumbnailQueue;
 import com.yanzhenjie.album.impl.OnItemClickListener;
 import com.yanzhenjie.album.mvp.BaseActivity;
 import com.yanzhenjie.album.util.AlbumUtils;
@@ -53,7 +58,14 @@ import com.yanzhenjie.mediascanner.MediaScanner;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * <p>Responsible for controlling the album data and the overall logic.</p>
@@ -62,6 +74,7 @@ import java.util.List;
 public class AlbumActivity extends BaseActivity implements
         Contract.AlbumPresenter,
         MediaReadTask.Callback,
+        MediaWatcher.Callback,
         GalleryActivity.Callback,
         PathConvertTask.Callback,
         ThumbnailBuildTask.Callback {
@@ -72,6 +85,7 @@ public class AlbumActivity extends BaseActivity implements
     public static Filter<Long> sSizeFilter;
     public static Filter<String> sMimeFilter;
     public static FilterWithReason<Long> sDurationFilter;
+    public static MediaFilter sMediaFilter;
 
     public static Action<ArrayList<AlbumFile>> sResult;
     public static Action<String> sCancel;
@@ -98,6 +112,10 @@ public class AlbumActivity extends BaseActivity implements
     private int mRevealY = -1;
 
     private ArrayList<AlbumFile> mCheckedList;
+    /**
+     * The position of each input checked file in the input list, by path.
+     */
+    private Map<String, Integer> mInputOrders;
     private MediaScanner mMediaScanner;
 
     private Contract.AlbumView mView;
@@ -105,7 +123,10 @@ public class AlbumActivity extends BaseActivity implements
     private PopupMenu mCameraPopupMenu;
     private LoadingDialog mLoadingDialog;
 
+    private MediaReader mMediaReader;
     private MediaReadTask mMediaReadTask;
+    private MediaWatcher mMediaWatcher;
+    private ThumbnailQueue mThumbnailQueue;
 
     private View mRootLayout;
 
@@ -119,6 +140,7 @@ public class AlbumActivity extends BaseActivity implements
         mView.setTitle(mWidget.getTitle());
         mView.setCompleteDisplay(false);
         mView.setLoadingDisplay(true);
+        mThumbnailQueue = new ThumbnailQueue(this);
 
         mRootLayout = findViewById(R.id.root_layout);
         if (savedInstanceState == null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP &&
@@ -210,8 +232,14 @@ public class AlbumActivity extends BaseActivity implements
     @Override
     protected void onPermissionGranted(int code) {
         ArrayList<AlbumFile> checkedList = getIntent().getParcelableArrayListExtra(Album.KEY_INPUT_CHECKED_LIST);
-        MediaReader mediaReader = new MediaReader(this, sSizeFilter, sMimeFilter, sDurationFilter, mFilterVisibility);
-        mMediaReadTask = new MediaReadTask(mFunction, checkedList, mediaReader, this);
+        mInputOrders = new HashMap<>();
+        if (checkedList != null) {
+            for (int i = checkedList.size() - 1; i >= 0; i--) {
+                mInputOrders.put(checkedList.get(i).getPath(), i);
+            }
+        }
+        mMediaReader = new MediaReader(this, sSizeFilter, sMimeFilter, sDurationFilter, sMediaFilter, mFilterVisibility);
+        mMediaReadTask = new MediaReadTask(this, mFunction, checkedList, mMediaReader, this);
         mMediaReadTask.execute();
     }
 
@@ -231,8 +259,32 @@ public class AlbumActivity extends BaseActivity implements
     }
 
     @Override
-    public void onScanCallback(ArrayList<AlbumFolder> albumFolders, ArrayList<AlbumFile> checkedFiles) {
-        mMediaReadTask = null;
+    public void onScanPage(ArrayList<AlbumFolder> albumFolders, ArrayList<AlbumFile> pageFiles, ArrayList<AlbumFile> checkedFiles) {
+        if (mAlbumFolders == null) {
+            setupAlbumFolders(albumFolders);
+            addInputCheckedFiles(checkedFiles);
+            enqueueThumbnails(checkedFiles);
+
+            showFolderAlbumFiles(0);
+            setCheckedCount();
+        } else {
+            AlbumFolder albumFolder = mAlbumFolders.get(mCurrentFolder);
+            int insertCount = mCurrentFolder == 0 ? pageFiles.size() : countBucketFiles(pageFiles, albumFolder.getName());
+            if (insertCount > 0) mView.updateAlbumFolder(albumFolder);
+            if (mFolderDialog != null && !mFolderDialog.isShowing()) mFolderDialog = null;
+
+            if (!checkedFiles.isEmpty()) {
+                addInputCheckedFiles(checkedFiles);
+                enqueueThumbnails(checkedFiles);
+                setCheckedCount();
+            }
+        }
+    }
+
+    /**
+     * Keep the folders of the scan, when the first page arrives or when the scan finds no files.
+     */
+    private void setupAlbumFolders(ArrayList<AlbumFolder> albumFolders) {
         switch (mChoiceMode) {
             case Album.MODE_MULTIPLE: {
                 mView.setCompleteDisplay(true);
@@ -249,20 +301,159 @@ public class AlbumActivity extends BaseActivity implements
 
         mView.setLoadingDisplay(false);
         mAlbumFolders = albumFolders;
-        mCheckedList = checkedFiles;
+        mCheckedList = new ArrayList<>();
+    }
+
+    /**
+     * Add the input checked files of a page. The pages arrive in date order, the checked list keeps the order
+     * of the input list, followed by the files the user has checked since.
+     */
+    private void addInputCheckedFiles(List<AlbumFile> checkedFiles) {
+        Set<String> checkedPaths = new HashSet<>();
+        for (AlbumFile albumFile : mCheckedList) {
+            checkedPaths.add(albumFile.getPath());
+        }
+        List<AlbumFile> pageFiles = new ArrayList<>(checkedFiles.size());
+        for (AlbumFile albumFile : checkedFiles) {
+            if (checkedPaths.add(albumFile.getPath())) pageFiles.add(albumFile);
+        }
+        if (pageFiles.isEmpty()) return;
+
+        Collections.sort(pageFiles, new Comparator<AlbumFile>() {
+            @Override
+            public int compare(AlbumFile o1, AlbumFile o2) {
+                int order1 = getInputOrder(o1);
+                int order2 = getInputOrder(o2);
+                return order1 == order2 ? 0 : (order1 < order2 ? -1 : 1);
+            }
+        });
+
+        // Merge the page into the input files at the head of the checked list in one pass.
+        int inputCount = 0;
+        while (inputCount < mCheckedList.size() && getInputOrder(mCheckedList.get(inputCount)) != Integer.MAX_VALUE) {
+            inputCount++;
+        }
+        List<AlbumFile> mergedFiles = new ArrayList<>(inputCount + pageFiles.size());
+        int index = 0;
+        for (AlbumFile albumFile : pageFiles) {
+            int order = getInputOrder(albumFile);
+            while (index < inputCount && getInputOrder(mCheckedList.get(index)) <= order) {
+                mergedFiles.add(mCheckedList.get(index++));
+            }
+            mergedFiles.add(albumFile);
+        }
+        while (index < inputCount) {
+            mergedFiles.add(mCheckedList.get(index++));
+        }
+        mCheckedList.subList(0, inputCount).clear();
+        mCheckedList.addAll(0, mergedFiles);
+    }
+
+    /**
+     * Get the position of a file in the input checked list, {@link Integer#MAX_VALUE} if it was not in the list.
+     */
+    private int getInputOrder(AlbumFile albumFile) {
+        Integer order = mInputOrders.get(albumFile.getPath());
+        return order == null ? Integer.MAX_VALUE : order;
+    }
+
+    private void enqueueThumbnails(List<AlbumFile> albumFiles) {
+        for (AlbumFile albumFile : albumFiles) {
+            mThumbnailQueue.enqueue(albumFile);
+        }
+    }
+
+    private static int countBucketFiles(List<AlbumFile> albumFiles, String bucketName) {
+        int count = 0;
+        for (AlbumFile albumFile : albumFiles) {
+            if (TextUtils.equals(bucketName, albumFile.getBucketName())) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void onScanCallback(FolderCollector folderCollector, MediaVersions mediaVersions) {
+        mMediaReadTask = null;
+        // No page is delivered when the scan finds no files, the camera can still add one.
+        if (mAlbumFolders == null) setupAlbumFolders(folderCollector.getAlbumFolders());
 
         if (mAlbumFolders.get(0).getAlbumFiles().isEmpty()) {
             Intent intent = new Intent(this, NullActivity.class);
             intent.putExtras(getIntent());
             startActivityForResult(intent, CODE_ACTIVITY_NULL);
         } else {
-            showFolderAlbumFiles(0);
-            int count = mCheckedList.size();
-            mView.setCheckedCount(count);
-            mView.setSubTitle(count + "/" + mLimitCount);
+            mMediaWatcher = new MediaWatcher(this, mFunction, mMediaReader, folderCollector, mediaVersions, this);
+            mMediaWatcher.register();
         }
     }
 
+    @Override
+    public void onMediaChanged(ArrayList<AlbumFile> insertedFiles, ArrayList<AlbumFile> changedFiles, Set<String> removedPaths) {
+        AlbumFolder currentFolder = mAlbumFolders.get(mCurrentFolder);
+        List<AlbumFile> currentFiles = currentFolder.getAlbumFiles();
+        boolean isChanged = false;
+
+        if (!removedPaths.isEmpty()) {
+            Iterator<AlbumFile> iterator = mCheckedList.iterator();
+            while (iterator.hasNext()) {
+                AlbumFile checkedFile = iterator.next();
+                if (removedPaths.contains(checkedFile.getPath())) {
+                    iterator.remove();
+                    mThumbnailQueue.cancel(checkedFile);
+                }
+            }
+
+            mMediaWatcher.getFolderCollector().removeAll(removedPaths);
+            int folderPosition = mAlbumFolders.indexOf(currentFolder);
+            if (folderPosition < 0) {
+                // The folder being shown is gone, fall back to the all folder.
+                currentFolder = mAlbumFolders.get(0);
+                currentFolder.setChecked(true);
+                currentFiles = currentFolder.getAlbumFiles();
+                showFolderAlbumFiles(0);
+            } else {
+                mCurrentFolder = folderPosition;
+                isChanged = true;
+            }
+            setCheckedCount();
+        }
+
+        boolean isCheckedChanged = false;
+        for (AlbumFile albumFile : changedFiles) {
+            AlbumFile replacedFile = mMediaWatcher.getFolderCollector().replace(albumFile);
+            if (replacedFile == null) {
+                insertedFiles.add(albumFile);
+                continue;
+            }
+
+            int checkedPosition = mCheckedList.indexOf(replacedFile);
+            if (checkedPosition >= 0) {
+                mThumbnailQueue.cancel(replacedFile);
+                if (albumFile.isDisable()) {
+                    mCheckedList.remove(checkedPosition);
+                    isCheckedChanged = true;
+                } else {
+                    albumFile.setChecked(true);
+                    mCheckedList.set(checkedPosition, albumFile);
+                    mThumbnailQueue.enqueue(albumFile);
+                }
+            }
+            if (currentFiles.contains(albumFile)) isChanged = true;
+        }
+        if (isCheckedChanged) setCheckedCount();
+
+        List<AlbumFile> allFiles = mAlbumFolders.get(0).getAlbumFiles();
+        for (AlbumFile albumFile : insertedFiles) {
+            // The camera may have added the file already.
+            if (allFiles.contains(albumFile)) continue;
+
+            mMediaWatcher.getFolderCollector().insert(albumFile);
+            if (currentFiles.contains(albumFile)) isChanged = true;
+        }
+        if (isChanged) mView.updateAlbumFolder(currentFolder);
+        if (mFolderDialog != null && !mFolderDialog.isShowing()) mFolderDialog = null;
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         switch (requestCode) {
@@ -436,7 +627,7 @@ public class AlbumActivity extends BaseActivity implements
             }
             mMediaScanner.scan(result);
 
-            PathConversion conversion = new PathConversion(sSizeFilter, sMimeFilter, sDurationFilter);
+            PathConversion conversion = new PathConversion(sSizeFilter, sMimeFilter, sDurationFilter, sMediaFilter);
             PathConvertTask task = new PathConvertTask(conversion, AlbumActivity.this);
             task.execute(result);
         }
@@ -462,23 +653,31 @@ public class AlbumActivity extends BaseActivity implements
     }
 
     private void addFileToList(AlbumFile albumFile) {
-        if (mCurrentFolder != 0) {
-            List<AlbumFile> albumFiles = mAlbumFolders.get(0).getAlbumFiles();
-            if (albumFiles.size() > 0) albumFiles.add(0, albumFile);
-            else albumFiles.add(albumFile);
-        }
-
-        AlbumFolder albumFolder = mAlbumFolders.get(mCurrentFolder);
-        List<AlbumFile> albumFiles = albumFolder.getAlbumFiles();
-        if (albumFiles.isEmpty()) {
-            albumFiles.add(albumFile);
-            mView.bindAlbumFolder(albumFolder);
+        List<AlbumFile> allFiles = mAlbumFolders.get(0).getAlbumFiles();
+        int loadedPosition = allFiles.indexOf(albumFile);
+        if (loadedPosition >= 0) {
+            // The provider has reported the file already, check the one in the list.
+            AlbumFile loadedFile = allFiles.get(loadedPosition);
+            loadedFile.setChecked(albumFile.isChecked());
+            albumFile = loadedFile;
+
+            mView.notifyItem(albumFile);
         } else {
+            if (mCurrentFolder != 0) {
+                if (allFiles.size() > 0) allFiles.add(0, albumFile);
+                else allFiles.add(albumFile);
+            }
+
+            AlbumFolder albumFolder = mAlbumFolders.get(mCurrentFolder);
+            List<AlbumFile> albumFiles = albumFolder.getAlbumFiles();
             albumFiles.add(0, albumFile);
-            mView.notifyItem((mHasCamera ? 1 : 0) + (mHasGoPro ? 1 : 0) + (mHasOtherFiles ? 1 : 0));
+            // The grid of an empty library has not been bound to the folder yet.
+            if (albumFiles.size() == 1) mView.bindAlbumFolder(albumFolder);
+            else mView.updateAlbumFolder(albumFolder);
         }
 
         mCheckedList.add(albumFile);
+        mThumbnailQueue.enqueue(albumFile);
         int count = mCheckedList.size();
         mView.setCheckedCount(count);
         mView.setSubTitle(count + "/" + mLimitCount);
@@ -499,8 +698,7 @@ public class AlbumActivity extends BaseActivity implements
     }
 
     @Override
-    public void tryCheckItem(CompoundButton button, int position) {
-        AlbumFile albumFile = mAlbumFolders.get(mCurrentFolder).getAlbumFiles().get(position);
+    public void tryCheckItem(CompoundButton button, AlbumFile albumFile) {
         if (button.isChecked()) {
             if (mCheckedList.size() >= mLimitCount) {
                 int messageRes;
@@ -526,11 +724,13 @@ public class AlbumActivity extends BaseActivity implements
             } else {
                 albumFile.setChecked(true);
                 mCheckedList.add(albumFile);
+                mThumbnailQueue.enqueue(albumFile);
                 setCheckedCount();
             }
         } else {
             albumFile.setChecked(false);
             mCheckedList.remove(albumFile);
+            mThumbnailQueue.cancel(albumFile);
             setCheckedCount();
         }
     }
@@ -542,8 +742,8 @@ public class AlbumActivity extends BaseActivity implements
     }
 
     @Override
-    public void tryPreviewItem(int position) {
-        PreviewActivity.sAlbumFile = mAlbumFolders.get(mCurrentFolder).getAlbumFiles().get(position);
+    public void tryPreviewItem(AlbumFile albumFile) {
+        PreviewActivity.sAlbumFile = albumFile;
         Intent intent = new Intent(this, PreviewActivity.class);
         intent.putExtras(getIntent());
         startActivity(intent);
@@ -595,15 +795,14 @@ public class AlbumActivity extends BaseActivity implements
 
     @Override
     public void onPreviewChanged(AlbumFile albumFile) {
-        ArrayList<AlbumFile> albumFiles = mAlbumFolders.get(mCurrentFolder).getAlbumFiles();
-        int position = albumFiles.indexOf(albumFile);
-        int notifyPosition = position + (mHasCamera ? 1 : 0) + (mHasGoPro ? 1 : 0) + (mHasOtherFiles ? 1 : 0);
-        mView.notifyItem(notifyPosition);
+        mView.notifyItem(albumFile);
 
         if (albumFile.isChecked()) {
             if (!mCheckedList.contains(albumFile)) mCheckedList.add(albumFile);
+            mThumbnailQueue.enqueue(albumFile);
         } else {
             if (mCheckedList.contains(albumFile)) mCheckedList.remove(albumFile);
+            mThumbnailQueue.cancel(albumFile);
         }
         setCheckedCount();
     }
@@ -645,7 +844,7 @@ public class AlbumActivity extends BaseActivity implements
      * Callback result action.
      */
     private void callbackResult() {
-        ThumbnailBuildTask task = new ThumbnailBuildTask(this, mCheckedList, this);
+        ThumbnailBuildTask task = new ThumbnailBuildTask(this, mCheckedList, mThumbnailQueue, this);
         task.execute();
     }
 
@@ -692,11 +891,19 @@ public class AlbumActivity extends BaseActivity implements
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        if (mMediaWatcher != null) mMediaWatcher.unregister();
+        mThumbnailQueue.release();
+        super.onDestroy();
+    }
+
     @Override
     public void finish() {
         sSizeFilter = null;
         sMimeFilter = null;
         sDurationFilter = null;
+        sMediaFilter = null;
         sResult = null;
         sCancel = null;
         super.finish();
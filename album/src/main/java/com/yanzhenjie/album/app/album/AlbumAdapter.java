@@ -18,7 +18,11 @@ package com.yanzhenjie.album.app.album;
 import android.content.Context;
 import android.content.res.ColorStateList;
 import android.graphics.Color;
+import android.os.AsyncTask;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.AppCompatCheckBox;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
@@ -32,11 +36,14 @@ import android.widget.TextView;
 
 import com.yanzhenjie.album.Album;
 import com.yanzhenjie.album.AlbumFile;
+import com.yanzhenjie.album.LoadHandle;
+import com.yanzhenjie.album.LoadRequest;
 import com.yanzhenjie.album.R;
 import com.yanzhenjie.album.impl.OnCheckedClickListener;
 import com.yanzhenjie.album.impl.OnItemClickListener;
 import com.yanzhenjie.album.util.AlbumUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -59,7 +66,13 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
     private final ColorStateList mSelector;
     private final int mSelectedColour;
 
+    /**
+     * A copy of the files shown, the lists of the folders change before the difference is computed.
+     */
     private List<AlbumFile> mAlbumFiles;
+    private DiffTask mDiffTask;
+    private List<AlbumFile> mPendingFiles;
+    private LoadRequest mLoadRequest = LoadRequest.newBuilder().usage(LoadRequest.USAGE_GRID).build();
 
     private OnItemClickListener mAddPhotoClickListener;
     private OnItemClickListener mAddGoProClickListener;
@@ -77,10 +90,95 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         this.mSelector = selector;
         this.mSelectedColour = selector.getColorForState(new int[]{android.R.attr.state_checked},
                 R.color.albumColorPrimary);
+        setHasStableIds(true);
     }
 
+    /**
+     * Show other files, such as the files of another folder. The grid is rebound at once,
+     * the stable ids keep the holders of the files in both. The adapter keeps a copy of the list.
+     *
+     * @param albumFiles files.
+     */
     public void setAlbumFiles(List<AlbumFile> albumFiles) {
-        this.mAlbumFiles = albumFiles;
+        if (mDiffTask != null) {
+            mDiffTask.cancel(false);
+            mDiffTask = null;
+        }
+        mPendingFiles = null;
+        mAlbumFiles = new ArrayList<>(albumFiles);
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Show the files after a few were inserted or removed, the grid is updated by their difference
+     * to the files shown, which is computed in the background. The adapter keeps a copy of the list.
+     *
+     * @param albumFiles files.
+     */
+    public void updateAlbumFiles(List<AlbumFile> albumFiles) {
+        List<AlbumFile> newFiles = new ArrayList<>(albumFiles);
+        if (mDiffTask != null) {
+            // Only the latest files are shown after the running difference.
+            mPendingFiles = newFiles;
+            return;
+        }
+
+        if (mAlbumFiles == null || mAlbumFiles.isEmpty() || newFiles.isEmpty()) {
+            int oldCount = mAlbumFiles == null ? 0 : mAlbumFiles.size();
+            mAlbumFiles = newFiles;
+            if (oldCount > 0) notifyItemRangeRemoved(cameraCount(), oldCount);
+            if (!newFiles.isEmpty()) notifyItemRangeInserted(cameraCount(), newFiles.size());
+            return;
+        }
+
+        mDiffTask = new DiffTask(mAlbumFiles, newFiles);
+        mDiffTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    private void onDiffFinished(DiffTask task, List<AlbumFile> newFiles, DiffUtil.DiffResult result) {
+        if (task != mDiffTask) return;
+        mDiffTask = null;
+        mAlbumFiles = newFiles;
+        final int camera = cameraCount();
+        result.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position + camera, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position + camera, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition + camera, toPosition + camera);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                notifyItemRangeChanged(position + camera, count, payload);
+            }
+        });
+
+        if (mPendingFiles != null) {
+            List<AlbumFile> pendingFiles = mPendingFiles;
+            mPendingFiles = null;
+            updateAlbumFiles(pendingFiles);
+        }
+    }
+
+    /**
+     * Set the size of a cell, the loader decodes the thumbnails for it.
+     *
+     * @param itemSize the size in pixels.
+     */
+    public void setItemSize(int itemSize) {
+        this.mLoadRequest = LoadRequest.newBuilder()
+                .size(itemSize, itemSize)
+                .usage(LoadRequest.USAGE_GRID)
+                .build();
     }
 
     public void setAddClickListener(OnItemClickListener addPhotoClickListener) {
@@ -107,12 +205,75 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         return (hasCamera ? 1 : 0) + (hasGoPro ? 1 : 0) + (hasOtherFiles ? 1 : 0);
     }
 
+    /**
+     * Get the file at the position in the files shown, the position the click listeners are given.
+     *
+     * @return the file, or null if the position is out of the files shown.
+     */
+    @Nullable
+    public AlbumFile getAlbumFile(int position) {
+        if (mAlbumFiles == null || position < 0 || position >= mAlbumFiles.size()) return null;
+        return mAlbumFiles.get(position);
+    }
+
+    /**
+     * Get the file at the adapter position.
+     *
+     * @return the file, or null if the item is a button.
+     */
+    @Nullable
+    public AlbumFile getItemAlbumFile(int adapterPosition) {
+        return getAlbumFile(adapterPosition - cameraCount());
+    }
+
+    /**
+     * Rebind the file if it is shown.
+     *
+     * @param albumFile file.
+     */
+    public void notifyAlbumFileChanged(AlbumFile albumFile) {
+        int position = mAlbumFiles == null ? -1 : mAlbumFiles.indexOf(albumFile);
+        if (position >= 0) notifyItemChanged(position + cameraCount());
+    }
+
     @Override
     public int getItemCount() {
         int camera = cameraCount();
         return mAlbumFiles == null ? camera : mAlbumFiles.size() + camera;
     }
 
+    @Override
+    public long getItemId(int position) {
+        int viewType = getItemViewType(position);
+        switch (viewType) {
+            case TYPE_BUTTON:
+            case TYPE_GOPRO:
+            case TYPE_OTHER_FILES: {
+                return -1L - viewType;
+            }
+            case TYPE_IMAGE:
+            case TYPE_VIDEO: {
+                return getPathId(mAlbumFiles.get(position - cameraCount()).getPath());
+            }
+            default: {
+                throw new AssertionError("This should not be the case.");
+            }
+        }
+    }
+
+    /**
+     * A 64-bit FNV-1a hash of the path, the files taken by the camera have no id of the provider yet.
+     * It is not negative, so it is neither {@link RecyclerView#NO_ID} nor the id of a button.
+     */
+    private static long getPathId(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash & Long.MAX_VALUE;
+    }
+
     @Override
     public int getItemViewType(int position) {
         if (hasCamera && hasGoPro && hasOtherFiles) {
@@ -163,7 +324,8 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
                         hasOtherFiles,
                         mSelectedColour,
                         mItemClickListener,
-                        mCheckedClickListener);
+                        mCheckedClickListener,
+                        mLoadRequest);
                 if (mChoiceMode == Album.MODE_MULTIPLE) {
                     imageViewHolder.mCheckBox.setVisibility(View.VISIBLE);
                     imageViewHolder.mCheckBox.setSupportButtonTintList(mSelector);
@@ -186,7 +348,8 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
                         hasOtherFiles,
                         mSelectedColour,
                         mItemClickListener,
-                        mCheckedClickListener);
+                        mCheckedClickListener,
+                        mLoadRequest);
                 if (mChoiceMode == Album.MODE_MULTIPLE) {
                     videoViewHolder.mCheckBox.setVisibility(View.VISIBLE);
                     videoViewHolder.mCheckBox.setSupportButtonTintList(mSelector);
@@ -232,6 +395,59 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         }
     }
 
+    @Override
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        // A cell which is off the screen does not need its thumbnail, the visible ones are decoded first.
+        if (holder instanceof MediaViewHolder) {
+            ((MediaViewHolder) holder).cancelLoad();
+        }
+    }
+
+    private class DiffTask extends AsyncTask<Void, Void, DiffUtil.DiffResult> {
+
+        private final List<AlbumFile> mOldFiles;
+        private final List<AlbumFile> mNewFiles;
+
+        DiffTask(List<AlbumFile> oldFiles, List<AlbumFile> newFiles) {
+            this.mOldFiles = oldFiles;
+            this.mNewFiles = newFiles;
+        }
+
+        @Override
+        protected DiffUtil.DiffResult doInBackground(Void... params) {
+            return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                @Override
+                public int getOldListSize() {
+                    return mOldFiles.size();
+                }
+
+                @Override
+                public int getNewListSize() {
+                    return mNewFiles.size();
+                }
+
+                @Override
+                public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                    return mOldFiles.get(oldItemPosition).equals(mNewFiles.get(newItemPosition));
+                }
+
+                @Override
+                public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                    AlbumFile oldFile = mOldFiles.get(oldItemPosition);
+                    AlbumFile newFile = mNewFiles.get(newItemPosition);
+                    // The same file is bound with its check state, which is notified when it changes.
+                    // Another file of the same path has been changed in the provider, it is bound again.
+                    return oldFile == newFile;
+                }
+            }, false);
+        }
+
+        @Override
+        protected void onPostExecute(DiffUtil.DiffResult result) {
+            if (!isCancelled()) onDiffFinished(this, mNewFiles, result);
+        }
+    }
+
     private static class ButtonViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
 
         private final OnItemClickListener mItemClickListener;
@@ -299,6 +515,8 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         private final OnItemClickListener mItemClickListener;
         private final OnCheckedClickListener mCheckedClickListener;
 
+        private final LoadRequest mLoadRequest;
+
         private ImageView mIvImage;
         private AppCompatCheckBox mCheckBox;
 
@@ -306,7 +524,8 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         private TextView mUnavailableText;
 
         ImageHolder(View itemView, boolean hasCamera, boolean hasGoPro, boolean hasOtherFiles, int selectedColor,
-                    OnItemClickListener itemClickListener, OnCheckedClickListener checkedClickListener) {
+                    OnItemClickListener itemClickListener, OnCheckedClickListener checkedClickListener,
+                    LoadRequest loadRequest) {
             super(itemView);
             this.hasCamera = hasCamera;
             this.hasGoPro = hasGoPro;
@@ -314,6 +533,7 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
             this.selectedColor = selectedColor;
             this.mItemClickListener = itemClickListener;
             this.mCheckedClickListener = checkedClickListener;
+            this.mLoadRequest = loadRequest;
 
             mIvImage = itemView.findViewById(R.id.iv_album_content_image);
             mCheckBox = itemView.findViewById(R.id.check_box);
@@ -333,9 +553,7 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         public void setData(AlbumFile albumFile) {
             mCheckBox.setChecked(albumFile.isChecked());
             mCheckBox.setBackgroundColor(albumFile.isChecked() ? selectedColor : Color.TRANSPARENT);
-            Album.getAlbumConfig()
-                    .getAlbumLoader()
-                    .load(mIvImage, albumFile);
+            load(mLoadRequest, mIvImage, albumFile);
 
             mLayoutLayer.setVisibility(albumFile.isDisable() ? View.VISIBLE : View.GONE);
             if (TextUtils.isEmpty(albumFile.getDisableReason())) {
@@ -380,6 +598,8 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         private final OnItemClickListener mItemClickListener;
         private final OnCheckedClickListener mCheckedClickListener;
 
+        private final LoadRequest mLoadRequest;
+
         private ImageView mIvImage;
         private AppCompatCheckBox mCheckBox;
         private TextView mTvDuration;
@@ -388,7 +608,8 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         private TextView mUnavailableText;
 
         VideoHolder(View itemView, boolean hasCamera, boolean hasGoPro, boolean hasOtherFiles, int selectedColor,
-                    OnItemClickListener itemClickListener, OnCheckedClickListener checkedClickListener) {
+                    OnItemClickListener itemClickListener, OnCheckedClickListener checkedClickListener,
+                    LoadRequest loadRequest) {
             super(itemView);
             this.hasCamera = hasCamera;
             this.hasGoPro = hasGoPro;
@@ -396,6 +617,7 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
             this.selectedColor = selectedColor;
             this.mItemClickListener = itemClickListener;
             this.mCheckedClickListener = checkedClickListener;
+            this.mLoadRequest = loadRequest;
 
             mIvImage = itemView.findViewById(R.id.iv_album_content_image);
             mCheckBox = itemView.findViewById(R.id.check_box);
@@ -414,7 +636,7 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 
         @Override
         public void setData(AlbumFile albumFile) {
-            Album.getAlbumConfig().getAlbumLoader().load(mIvImage, albumFile);
+            load(mLoadRequest, mIvImage, albumFile);
             mCheckBox.setChecked(albumFile.isChecked());
             mCheckBox.setBackgroundColor(albumFile.isChecked() ? selectedColor : Color.TRANSPARENT);
             mTvDuration.setText(AlbumUtils.convertDuration(albumFile.getDuration()));
@@ -453,6 +675,9 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
     }
 
     private abstract static class MediaViewHolder extends RecyclerView.ViewHolder {
+
+        private LoadHandle mLoadHandle = LoadHandle.NONE;
+
         public MediaViewHolder(View itemView) {
             super(itemView);
         }
@@ -461,5 +686,21 @@ public class AlbumAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
          * Bind Item data.
          */
         public abstract void setData(AlbumFile albumFile);
+
+        /**
+         * Load the thumbnail of the file, the load of the previous file is cancelled.
+         */
+        protected void load(LoadRequest request, ImageView imageView, AlbumFile albumFile) {
+            mLoadHandle.cancel();
+            mLoadHandle = request.load(imageView, albumFile);
+        }
+
+        /**
+         * Cancel the load of the thumbnail, such as when the holder is recycled.
+         */
+        public void cancelLoad() {
+            mLoadHandle.cancel();
+            mLoadHandle = LoadHandle.NONE;
+        }
     }
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.support.v7.widget.Toolbar;
+import android.util.DisplayMetrics;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
@@ -30,6 +31,7 @@ import android.widget.Button;
 import android.widget.CompoundButton;
 import android.widget.LinearLayout;
 
+import com.yanzhenjie.album.AlbumFile;
 import com.yanzhenjie.album.AlbumFolder;
 import com.yanzhenjie.album.R;
 import com.yanzhenjie.album.api.widget.Widget;
@@ -55,6 +57,7 @@ class AlbumView extends Contract.AlbumView implements View.OnClickListener {
     private RecyclerView mRecyclerView;
     private GridLayoutManager mLayoutManager;
     private AlbumAdapter mAdapter;
+    private ThumbnailPrefetcher mPrefetcher;
 
     private Button mBtnPreview;
     private Button mBtnSwitchFolder;
@@ -130,6 +133,11 @@ class AlbumView extends Contract.AlbumView implements View.OnClickListener {
         int dividerSize = getResources().getDimensionPixelSize(R.dimen.album_dp_4);
         mRecyclerView.addItemDecoration(new Api21ItemDivider(Color.TRANSPARENT, dividerSize, dividerSize));
         mAdapter = new AlbumAdapter(getContext(), hasCamera, hasGoPro, hasOtherFiles, choiceMode, widget.getMediaItemCheckSelector());
+        // The grid spans the shorter side of the screen in both orientations.
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        int spanSize = Math.min(metrics.widthPixels, metrics.heightPixels);
+        int itemSize = (spanSize - dividerSize * (column - 1)) / column;
+        mAdapter.setItemSize(itemSize);
         mAdapter.setAddClickListener(new OnItemClickListener() {
             @Override
             public void onItemClick(View view, int position) {
@@ -151,16 +159,21 @@ class AlbumView extends Contract.AlbumView implements View.OnClickListener {
         mAdapter.setCheckedClickListener(new OnCheckedClickListener() {
             @Override
             public void onCheckedClick(CompoundButton button, int position) {
-                getPresenter().tryCheckItem(button, position);
+                // The presenter may have changed its files while the grid still shows these.
+                AlbumFile albumFile = mAdapter.getAlbumFile(position);
+                if (albumFile != null) getPresenter().tryCheckItem(button, albumFile);
             }
         });
         mAdapter.setItemClickListener(new OnItemClickListener() {
             @Override
             public void onItemClick(View view, int position) {
-                getPresenter().tryPreviewItem(position);
+                AlbumFile albumFile = mAdapter.getAlbumFile(position);
+                if (albumFile != null) getPresenter().tryPreviewItem(albumFile);
             }
         });
         mRecyclerView.setAdapter(mAdapter);
+        mPrefetcher = new ThumbnailPrefetcher(getContext(), mLayoutManager, mAdapter, itemSize);
+        mRecyclerView.addOnScrollListener(mPrefetcher);
     }
 
     @Override
@@ -191,6 +204,11 @@ class AlbumView extends Contract.AlbumView implements View.OnClickListener {
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        mPrefetcher.release();
+    }
+
     @Override
     public void setCompleteDisplay(boolean display) {
         mCompleteMenu.setVisible(display);
@@ -200,14 +218,20 @@ class AlbumView extends Contract.AlbumView implements View.OnClickListener {
     public void bindAlbumFolder(AlbumFolder albumFolder) {
         mBtnSwitchFolder.setText(albumFolder.getName());
 
+        mPrefetcher.reset();
         mAdapter.setAlbumFiles(albumFolder.getAlbumFiles());
-        mAdapter.notifyDataSetChanged();
         mRecyclerView.scrollToPosition(0);
     }
 
     @Override
-    public void notifyItem(int position) {
-        mAdapter.notifyItemChanged(position);
+    public void notifyItem(AlbumFile albumFile) {
+        mAdapter.notifyAlbumFileChanged(albumFile);
+    }
+
+    @Override
+    public void updateAlbumFolder(AlbumFolder albumFolder) {
+        mPrefetcher.reset();
+        mAdapter.updateAlbumFiles(albumFolder.getAlbumFiles());
     }
 
     @Override
@@ -25,9 +25,9 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.yanzhenjie.album.Album;
 import com.yanzhenjie.album.AlbumFile;
 import com.yanzhenjie.album.AlbumFolder;
+import com.yanzhenjie.album.LoadRequest;
 import com.yanzhenjie.album.R;
 import com.yanzhenjie.album.impl.OnItemClickListener;
 
@@ -42,6 +42,7 @@ class FolderAdapter extends RecyclerView.Adapter<FolderAdapter.FolderViewHolder>
     private LayoutInflater mInflater;
     private List<AlbumFolder> mAlbumFolders;
     private ColorStateList mSelector;
+    private LoadRequest mLoadRequest;
 
     private OnItemClickListener mItemClickListener;
 
@@ -49,6 +50,11 @@ class FolderAdapter extends RecyclerView.Adapter<FolderAdapter.FolderViewHolder>
         this.mInflater = LayoutInflater.from(context);
         this.mSelector = buttonTint;
         this.mAlbumFolders = mAlbumFolders;
+        int coverSize = context.getResources().getDimensionPixelSize(R.dimen.album_dp_80);
+        this.mLoadRequest = LoadRequest.newBuilder()
+                .size(coverSize, coverSize)
+                .usage(LoadRequest.USAGE_FOLDER_COVER)
+                .build();
     }
 
     public void setItemClickListener(OnItemClickListener itemClickListener) {
@@ -59,6 +65,7 @@ class FolderAdapter extends RecyclerView.Adapter<FolderAdapter.FolderViewHolder>
     public FolderViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         return new FolderViewHolder(mInflater.inflate(R.layout.album_item_dialog_folder, parent, false),
                 mSelector,
+                mLoadRequest,
                 new OnItemClickListener() {
 
                     private int oldPosition = 0;
@@ -94,15 +101,18 @@ class FolderAdapter extends RecyclerView.Adapter<FolderAdapter.FolderViewHolder>
     static class FolderViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
 
         private OnItemClickListener mItemClickListener;
+        private LoadRequest mLoadRequest;
 
         private ImageView mIvImage;
         private TextView mTvTitle;
         private AppCompatRadioButton mCheckBox;
 
-        private FolderViewHolder(View itemView, ColorStateList selector, OnItemClickListener itemClickListener) {
+        private FolderViewHolder(View itemView, ColorStateList selector, LoadRequest loadRequest,
+                                 OnItemClickListener itemClickListener) {
             super(itemView);
 
             this.mItemClickListener = itemClickListener;
+            this.mLoadRequest = loadRequest;
 
             mIvImage = itemView.findViewById(R.id.iv_gallery_preview_image);
             mTvTitle = itemView.findViewById(R.id.tv_gallery_preview_title);
@@ -118,7 +128,7 @@ class FolderAdapter extends RecyclerView.Adapter<FolderAdapter.FolderViewHolder>
             mTvTitle.setText("(" + albumFiles.size() + ") " + albumFolder.getName());
             mCheckBox.setChecked(albumFolder.isChecked());
 
-            Album.getAlbumConfig().getAlbumLoader().load(mIvImage, albumFiles.get(0));
+            mLoadRequest.load(mIvImage, albumFiles.get(0));
         }
 
         @Override
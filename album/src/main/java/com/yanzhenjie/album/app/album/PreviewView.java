@@ -5,13 +5,14 @@ import android.graphics.Color;
 import android.media.MediaPlayer;
 import android.net.Uri;
 import android.support.v7.widget.Toolbar;
+import android.util.DisplayMetrics;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.MediaController;
 import android.widget.VideoView;
 
-import com.yanzhenjie.album.Album;
 import com.yanzhenjie.album.AlbumFile;
+import com.yanzhenjie.album.LoadRequest;
 import com.yanzhenjie.album.R;
 import com.yanzhenjie.album.app.Contract;
 import com.yanzhenjie.album.mvp.BasePresenter;
@@ -77,7 +78,13 @@ public class PreviewView extends Contract.PreviewView implements View.OnClickLis
             mVideoView.setVisibility(View.GONE);
 
             mImageView.setVisibility(View.VISIBLE);
-            Album.getAlbumConfig().getAlbumLoader().load(mImageView, data);
+            DisplayMetrics metrics = getResources().getDisplayMetrics();
+            LoadRequest.newBuilder()
+                    .size(metrics.widthPixels, metrics.heightPixels)
+                    .usage(LoadRequest.USAGE_PREVIEW)
+                    .priority(LoadRequest.PRIORITY_HIGH)
+                    .build()
+                    .load(mImageView, data);
         }
     }
 
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+
+import com.yanzhenjie.album.Album;
+import com.yanzhenjie.album.AlbumFile;
+import com.yanzhenjie.album.AlbumLoader;
+import com.yanzhenjie.album.LoadHandle;
+import com.yanzhenjie.album.LoadRequest;
+import com.yanzhenjie.album.app.album.data.ThumbnailLoader;
+
+/**
+ * <p>Preloads the thumbnails of the rows ahead of the scroll into the memory cache of {@link ThumbnailLoader},
+ * so the cells are not blank when they come onto the screen. The decoding is paused while the grid is flung
+ * too fast for the cells to be seen, and resumed once the scroll slows down or stops.</p>
+ * <p>Nothing is preloaded for other loaders.</p>
+ */
+class ThumbnailPrefetcher extends RecyclerView.OnScrollListener {
+
+    /**
+     * The rows preloaded ahead of the scroll.
+     */
+    private static final int PREFETCH_ROWS = 3;
+    /**
+     * A scroll faster than this many rows a second pauses the decoding.
+     */
+    private static final int PAUSE_ROWS_PER_SECOND = 20;
+    /**
+     * A scroll slower than this many rows a second resumes the decoding.
+     */
+    private static final int RESUME_ROWS_PER_SECOND = 10;
+    /**
+     * Two scroll events further apart than this do not give a velocity.
+     */
+    private static final long MAX_SCROLL_INTERVAL = 100;
+
+    private final Context mContext;
+    private final GridLayoutManager mLayoutManager;
+    private final AlbumAdapter mAdapter;
+    private final int mItemSize;
+    private final LoadRequest mLoadRequest;
+
+    /**
+     * The preloads by adapter position.
+     */
+    private final SparseArray<LoadHandle> mHandles = new SparseArray<>();
+
+    private int mDirection = 1;
+    private long mLastScrollTime;
+    private boolean isPaused;
+
+    ThumbnailPrefetcher(Context context, GridLayoutManager layoutManager, AlbumAdapter adapter, int itemSize) {
+        this.mContext = context.getApplicationContext();
+        this.mLayoutManager = layoutManager;
+        this.mAdapter = adapter;
+        this.mItemSize = Math.max(itemSize, 1);
+        this.mLoadRequest = LoadRequest.newBuilder()
+                .size(itemSize, itemSize)
+                .usage(LoadRequest.USAGE_GRID)
+                .priority(LoadRequest.PRIORITY_LOW)
+                .build();
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        int delta = mLayoutManager.getOrientation() == LinearLayoutManager.VERTICAL ? dy : dx;
+        if (delta == 0) return;
+        mDirection = delta > 0 ? 1 : -1;
+
+        long now = SystemClock.uptimeMillis();
+        long interval = now - mLastScrollTime;
+        mLastScrollTime = now;
+        if (interval > 0 && interval < MAX_SCROLL_INTERVAL) {
+            float rowsPerSecond = Math.abs(delta) * 1000F / interval / mItemSize;
+            if (rowsPerSecond > PAUSE_ROWS_PER_SECOND) {
+                setPaused(true);
+            } else if (rowsPerSecond < RESUME_ROWS_PER_SECOND) {
+                setPaused(false);
+            }
+        }
+        if (!isPaused) prefetch();
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            setPaused(false);
+            prefetch();
+        }
+    }
+
+    /**
+     * Cancel the preloads, such as when the files of the adapter are changed.
+     */
+    void reset() {
+        for (int i = 0; i < mHandles.size(); i++) {
+            mHandles.valueAt(i).cancel();
+        }
+        mHandles.clear();
+    }
+
+    /**
+     * Cancel the preloads and resume the decoding, the loader is shared with the other pages.
+     */
+    void release() {
+        reset();
+        setPaused(false);
+    }
+
+    private void setPaused(boolean paused) {
+        if (isPaused == paused) return;
+        ThumbnailLoader loader = getLoader();
+        if (loader == null) return;
+
+        isPaused = paused;
+        if (paused) {
+            reset();
+            loader.pause();
+        } else {
+            loader.resume();
+        }
+    }
+
+    /**
+     * Preload the rows ahead of the scroll, the preloads behind it or on the screen are cancelled.
+     */
+    private void prefetch() {
+        ThumbnailLoader loader = getLoader();
+        if (loader == null) return;
+
+        int first = mLayoutManager.findFirstVisibleItemPosition();
+        int last = mLayoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) return;
+
+        int count = mLayoutManager.getSpanCount() * PREFETCH_ROWS;
+        int start;
+        int end;
+        if (mDirection > 0) {
+            start = last + 1;
+            end = Math.min(last + count, mAdapter.getItemCount() - 1);
+        } else {
+            start = Math.max(first - count, 0);
+            end = first - 1;
+        }
+
+        for (int i = mHandles.size() - 1; i >= 0; i--) {
+            int position = mHandles.keyAt(i);
+            if (position < start || position > end) {
+                mHandles.valueAt(i).cancel();
+                mHandles.removeAt(i);
+            }
+        }
+        for (int position = start; position <= end; position++) {
+            if (mHandles.get(position) != null) continue;
+            AlbumFile albumFile = mAdapter.getItemAlbumFile(position);
+            if (albumFile == null) continue;
+            mHandles.put(position, loader.preload(mContext, albumFile, mLoadRequest));
+        }
+    }
+
+    @Nullable
+    private static ThumbnailLoader getLoader() {
+        AlbumLoader loader = Album.getAlbumConfig().getAlbumLoader();
+        return loader instanceof ThumbnailLoader ? (ThumbnailLoader) loader : null;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import android.annotation.TargetApi;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>Pool of the mutable bitmaps which are no longer used, bucketed by the bytes they hold.
+ * A decode reuses a pooled bitmap through {@link BitmapFactory.Options#inBitmap} instead of allocating one,
+ * the least recently pooled bitmaps are recycled once the pool exceeds its budget.</p>
+ * <p>A bitmap of any size is only reused from {@link Build.VERSION_CODES#KITKAT}, the pool is disabled before.</p>
+ */
+public class BitmapPool {
+
+    /**
+     * A bitmap is only reused for a decode which needs at least this part of it, so the memory is not wasted.
+     */
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    /**
+     * Create a pool with the budget of a sixteenth of the memory class of the application.
+     *
+     * @param context context.
+     * @return {@link BitmapPool}.
+     */
+    public static BitmapPool create(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long memoryClass = activityManager.getMemoryClass() * 1024L * 1024L;
+        return new BitmapPool(memoryClass / 16);
+    }
+
+    private final long mMaxSize;
+    private final boolean isEnabled = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+
+    private final TreeMap<Integer, LinkedList<Bitmap>> mBuckets = new TreeMap<>();
+    private final LinkedHashSet<Bitmap> mBitmaps = new LinkedHashSet<>();
+    private long mSize;
+
+    public BitmapPool(long maxSize) {
+        this.mMaxSize = maxSize;
+    }
+
+    /**
+     * Get the budget in bytes.
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Get the bytes of the pooled bitmaps.
+     */
+    public synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Return a bitmap which is no longer drawn, it is recycled if it can not be reused.
+     *
+     * @param bitmap bitmap.
+     */
+    public synchronized void put(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+
+        int byteCount = isEnabled ? getByteCount(bitmap) : 0;
+        if (!isEnabled || !bitmap.isMutable() || byteCount > mMaxSize / 2 || mBitmaps.contains(bitmap)) {
+            bitmap.recycle();
+            return;
+        }
+
+        LinkedList<Bitmap> bucket = mBuckets.get(byteCount);
+        if (bucket == null) {
+            bucket = new LinkedList<>();
+            mBuckets.put(byteCount, bucket);
+        }
+        bucket.add(bitmap);
+        mBitmaps.add(bitmap);
+        mSize += byteCount;
+        trim(mMaxSize);
+    }
+
+    /**
+     * Get a bitmap of the dimensions and config, its content is not cleared.
+     *
+     * @return the bitmap, or null if the pool has none to reuse.
+     */
+    @Nullable
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(width * height * getBytesPerPixel(config));
+        if (bitmap == null) return null;
+
+        try {
+            reconfigure(bitmap, width, height, config);
+            return bitmap;
+        } catch (IllegalArgumentException e) {
+            bitmap.recycle();
+            return null;
+        }
+    }
+
+    /**
+     * Let the decode reuse a pooled bitmap, it also makes the decoded bitmap mutable so it can be pooled later.
+     * The options must have the sample size and the config of the decode.
+     *
+     * @param width    the width of the source.
+     * @param height   the height of the source.
+     * @param isOpaque the source has no alpha, such as a JPEG. A source with alpha is decoded with
+     *                 {@link Bitmap.Config#ARGB_8888} whatever config is preferred, so it only reuses a bitmap with it.
+     */
+    public void setInBitmap(BitmapFactory.Options options, int width, int height, boolean isOpaque) {
+        if (!isEnabled) return;
+
+        options.inMutable = true;
+        Bitmap.Config config = options.inPreferredConfig == null ? Bitmap.Config.ARGB_8888 : options.inPreferredConfig;
+        if (!isOpaque && config != Bitmap.Config.ARGB_8888) return;
+
+        // The decoders round a sample size down to a power of two.
+        int sampleSize = Integer.highestOneBit(Math.max(options.inSampleSize, 1));
+        // The decoders round the sampled dimensions differently, the larger one is reserved.
+        int sampledWidth = (width + sampleSize - 1) / sampleSize;
+        int sampledHeight = (height + sampleSize - 1) / sampleSize;
+        options.inBitmap = take(sampledWidth * sampledHeight * getBytesPerPixel(config));
+    }
+
+    /**
+     * Recycle the least recently pooled bitmaps until the pool is within the size.
+     */
+    public synchronized void trim(long size) {
+        Iterator<Bitmap> iterator = mBitmaps.iterator();
+        while (mSize > size && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            iterator.remove();
+            int byteCount = getByteCount(bitmap);
+            removeFromBucket(byteCount, bitmap);
+            mSize -= byteCount;
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Recycle every pooled bitmap.
+     */
+    public void clear() {
+        trim(0);
+    }
+
+    @Nullable
+    private synchronized Bitmap take(int byteCount) {
+        if (!isEnabled || byteCount <= 0) return null;
+
+        Map.Entry<Integer, LinkedList<Bitmap>> entry = mBuckets.ceilingEntry(byteCount);
+        if (entry == null || entry.getKey() > byteCount * MAX_SIZE_MULTIPLE) return null;
+
+        Bitmap bitmap = entry.getValue().removeLast();
+        if (entry.getValue().isEmpty()) mBuckets.remove(entry.getKey());
+        mBitmaps.remove(bitmap);
+        mSize -= entry.getKey();
+        return bitmap;
+    }
+
+    private void removeFromBucket(int byteCount, Bitmap bitmap) {
+        LinkedList<Bitmap> bucket = mBuckets.get(byteCount);
+        if (bucket == null) return;
+
+        bucket.remove(bitmap);
+        if (bucket.isEmpty()) mBuckets.remove(byteCount);
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static int getByteCount(Bitmap bitmap) {
+        return bitmap.getAllocationByteCount();
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void reconfigure(Bitmap bitmap, int width, int height, Bitmap.Config config) {
+        bitmap.reconfigure(width, height, config);
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8: {
+                return 1;
+            }
+            case RGB_565:
+            case ARGB_4444: {
+                return 2;
+            }
+            default: {
+                return 4;
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import android.support.annotation.Nullable;
+
+import com.yanzhenjie.album.AlbumFile;
+import com.yanzhenjie.album.AlbumFolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Groups the files into the all folder and the bucket folders, keeping the order in which they are added.</p>
+ */
+public class FolderCollector {
+
+    private final ArrayList<AlbumFolder> mAlbumFolders = new ArrayList<>();
+    private final Map<String, AlbumFolder> mAlbumFolderMap = new HashMap<>();
+    private final AlbumFolder mAllFileFolder;
+
+    public FolderCollector(String allFolderName) {
+        this.mAllFileFolder = new AlbumFolder();
+        this.mAllFileFolder.setChecked(true);
+        this.mAllFileFolder.setName(allFolderName);
+        this.mAlbumFolders.add(mAllFileFolder);
+    }
+
+    /**
+     * Append files to the end of the folders.
+     *
+     * @param albumFiles files.
+     */
+    public void addAll(List<AlbumFile> albumFiles) {
+        for (AlbumFile albumFile : albumFiles) {
+            mAllFileFolder.addAlbumFile(albumFile);
+
+            // The scan pools the bucket names, so the key is usually matched by reference.
+            String bucketName = albumFile.getBucketName();
+            AlbumFolder albumFolder = mAlbumFolderMap.get(bucketName);
+            if (albumFolder == null) {
+                albumFolder = new AlbumFolder();
+                albumFolder.setName(bucketName);
+                mAlbumFolderMap.put(bucketName, albumFolder);
+                mAlbumFolders.add(albumFolder);
+            }
+            albumFolder.addAlbumFile(albumFile);
+        }
+    }
+
+    /**
+     * Insert a file into the all folder and its bucket folder, keeping the date added descending.
+     *
+     * @param albumFile file.
+     */
+    public void insert(AlbumFile albumFile) {
+        insertSorted(mAllFileFolder.getAlbumFiles(), albumFile);
+
+        String bucketName = albumFile.getBucketName();
+        AlbumFolder albumFolder = mAlbumFolderMap.get(bucketName);
+        if (albumFolder == null) {
+            albumFolder = new AlbumFolder();
+            albumFolder.setName(bucketName);
+            mAlbumFolderMap.put(bucketName, albumFolder);
+            mAlbumFolders.add(albumFolder);
+        }
+        insertSorted(albumFolder.getAlbumFiles(), albumFile);
+    }
+
+    private static void insertSorted(List<AlbumFile> albumFiles, AlbumFile albumFile) {
+        // New files are usually the newest ones, so the position is found near the head.
+        int position = 0;
+        while (position < albumFiles.size() && albumFiles.get(position).getAddDate() >= albumFile.getAddDate()) {
+            position++;
+        }
+        albumFiles.add(position, albumFile);
+    }
+
+    /**
+     * Replace the file of the same path in the all folder and its bucket folder, keeping its position.
+     *
+     * @param albumFile file.
+     * @return the file which was replaced, or null if there is no file of the same path.
+     */
+    @Nullable
+    public AlbumFile replace(AlbumFile albumFile) {
+        List<AlbumFile> allFiles = mAllFileFolder.getAlbumFiles();
+        int position = allFiles.indexOf(albumFile);
+        if (position < 0) return null;
+
+        AlbumFile replacedFile = allFiles.set(position, albumFile);
+        AlbumFolder albumFolder = mAlbumFolderMap.get(replacedFile.getBucketName());
+        if (albumFolder != null) {
+            List<AlbumFile> albumFiles = albumFolder.getAlbumFiles();
+            position = albumFiles.indexOf(albumFile);
+            if (position >= 0) albumFiles.set(position, albumFile);
+        }
+        return replacedFile;
+    }
+
+    /**
+     * Remove the files from all the folders, the bucket folders which become empty are removed.
+     *
+     * @param paths the paths of the files.
+     */
+    public void removeAll(Set<String> paths) {
+        Iterator<AlbumFolder> iterator = mAlbumFolders.iterator();
+        while (iterator.hasNext()) {
+            AlbumFolder albumFolder = iterator.next();
+            List<AlbumFile> albumFiles = albumFolder.getAlbumFiles();
+            int keepCount = 0;
+            for (int i = 0; i < albumFiles.size(); i++) {
+                AlbumFile albumFile = albumFiles.get(i);
+                if (!paths.contains(albumFile.getPath())) albumFiles.set(keepCount++, albumFile);
+            }
+            albumFiles.subList(keepCount, albumFiles.size()).clear();
+
+            if (albumFiles.isEmpty() && albumFolder != mAllFileFolder) {
+                iterator.remove();
+                mAlbumFolderMap.remove(albumFolder.getName());
+            }
+        }
+    }
+
+    /**
+     * Get the folders, the first one contains all the files.
+     */
+    public ArrayList<AlbumFolder> getAlbumFolders() {
+        return mAlbumFolders;
+    }
+}
@@ -0,0 +1,517 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import android.content.ComponentCallbacks2;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.yanzhenjie.album.AlbumFile;
+import com.yanzhenjie.album.util.AlbumUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Local copy of the image and video rows of the media provider, kept in a binary file.
+ * Once loaded it is reconciled with the provider, only the added, modified and removed rows are read again.
+ * An observed index is not reconciled until the provider reports a change. Only the rows which the media filter
+ * keeps are read, an index read with another media filter is built again.</p>
+ * <p>The rows stay in memory for the life of the process, so a repeat launch neither reads the file nor the provider
+ * while nothing has changed. They are dropped when the system asks the process to trim its memory,
+ * the next launch loads them from the disk again. Each row is kept as the file the albums show, so the index and
+ * an open album share one file per row.</p>
+ */
+public class MediaIndex {
+
+    private static final String INDEX_FILE = "media.index";
+    private static final int MAGIC = 0x414c4249;
+    private static final int VERSION = 3;
+
+    /**
+     * The number of ids in one {@code IN} clause.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    private static final Object LOCK = new Object();
+
+    /**
+     * The dimensions are only read where the provider has them, from the last two columns.
+     */
+    private static final String[] ENTRIES = entries(
+            MediaStore.Files.FileColumns._ID,
+            MediaStore.Files.FileColumns.DATE_MODIFIED,
+            MediaStore.Files.FileColumns.MEDIA_TYPE,
+            MediaStore.Files.FileColumns.DATA,
+            MediaStore.Images.Media.BUCKET_DISPLAY_NAME,
+            MediaStore.Files.FileColumns.MIME_TYPE,
+            MediaStore.Files.FileColumns.DATE_ADDED,
+            MediaStore.Images.Media.LATITUDE,
+            MediaStore.Images.Media.LONGITUDE,
+            MediaStore.Files.FileColumns.SIZE,
+            MediaStore.Video.Media.DURATION,
+            MediaStore.Images.Media.ORIENTATION
+    );
+
+    private static String[] entries(String... columns) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) return columns;
+
+        String[] entries = Arrays.copyOf(columns, columns.length + 2);
+        entries[columns.length] = MediaStore.MediaColumns.WIDTH;
+        entries[columns.length + 1] = MediaStore.MediaColumns.HEIGHT;
+        return entries;
+    }
+
+    private static final String[] VERSIONS = {
+            MediaStore.Files.FileColumns._ID,
+            MediaStore.Files.FileColumns.DATE_MODIFIED
+    };
+
+    private static final String SELECTION = MediaStore.Files.FileColumns.MEDIA_TYPE + " IN (" +
+            MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE + "," + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO + ")";
+
+    private final File mIndexFile;
+    private final Context mContext;
+    private final ContentResolver mContentResolver;
+
+    private volatile MediaRows mRows;
+    private String mSelection;
+    private String[] mSelectionArgs = new String[0];
+    private boolean isChanged;
+
+    private boolean isObserving;
+    private volatile boolean isStale = true;
+
+    public MediaIndex(Context context) {
+        this.mIndexFile = new File(AlbumUtils.getAlbumRootPath(context), INDEX_FILE);
+        this.mContext = context.getApplicationContext();
+        this.mContentResolver = mContext.getContentResolver();
+    }
+
+    /**
+     * Get the rows, sorted by the date added descending. The media type is
+     * {@link AlbumFile#TYPE_IMAGE} or {@link AlbumFile#TYPE_VIDEO}.
+     *
+     * @return the rows, or null if the index has not been updated or has been trimmed.
+     */
+    @Nullable
+    MediaRows getRows() {
+        return mRows;
+    }
+
+    /**
+     * Observe the images and videos of the provider, any change marks the index stale.
+     * The rows in memory are dropped when the memory of the process runs low.
+     */
+    public synchronized void observe() {
+        if (isObserving) return;
+
+        ContentObserver observer = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                isStale = true;
+            }
+        };
+        mContentResolver.registerContentObserver(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, true, observer);
+        mContentResolver.registerContentObserver(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, true, observer);
+        mContext.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                // The app is only hidden, the next album is likely opened soon.
+                if (level >= TRIM_MEMORY_RUNNING_LOW && level != TRIM_MEMORY_UI_HIDDEN) trim();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                trim();
+            }
+        });
+        isObserving = true;
+    }
+
+    /**
+     * Make the index up to date. It is loaded from the disk if needed, an observed index without changes
+     * is used as it is, otherwise it is reconciled with the provider.
+     *
+     * @param selection     the selection of the media filter, null if it keeps every row.
+     * @param selectionArgs the args of the selection.
+     * @return true if the index is up to date, false if it has never been saved, has been read with another
+     * selection or the provider can not be read.
+     */
+    @WorkerThread
+    public synchronized boolean update(@Nullable String selection, String[] selectionArgs) {
+        if (mRows == null && !load()) return false;
+        if (!isSelection(selection, selectionArgs)) {
+            mRows = null;
+            isChanged = false;
+            return false;
+        }
+        if (isObserving && !isStale) return true;
+        return sync();
+    }
+
+    private boolean isSelection(@Nullable String selection, String[] selectionArgs) {
+        boolean isSame = selection == null ? mSelection == null : selection.equals(mSelection);
+        return isSame && Arrays.equals(selectionArgs, mSelectionArgs);
+    }
+
+    /**
+     * Start building the index from the rows of a full scan, the scan adds them to the returned rows.
+     * A change reported while the scan runs marks the built index stale.
+     */
+    MediaRows startBuild() {
+        isStale = false;
+        return new MediaRows(0);
+    }
+
+    /**
+     * Finish building the index. The rows of a scan which has read every row replace the index and are written
+     * to the disk, otherwise the index is reconciled by the next update.
+     *
+     * @param selection     the selection of the media filter of the scan, null if it kept every row.
+     * @param selectionArgs the args of the selection.
+     */
+    @WorkerThread
+    synchronized void finishBuild(MediaRows rows, @Nullable String selection, String[] selectionArgs, boolean isComplete) {
+        if (!isComplete) {
+            isStale = true;
+            return;
+        }
+
+        mRows = rows;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        isChanged = true;
+        save();
+    }
+
+    /**
+     * Drop the rows from the memory, they are loaded from the disk again by the next update and reconciled,
+     * the rows which have not been saved yet are read again. It is not synchronized, so the main thread does not
+     * wait for an update which is running, the rows of such an update are kept until the next trim.
+     */
+    private void trim() {
+        mRows = null;
+        isStale = true;
+    }
+
+    /**
+     * Load the index from the disk.
+     *
+     * @return true if the index was loaded, false if it does not exist or can not be read.
+     */
+    @WorkerThread
+    public synchronized boolean load() {
+        synchronized (LOCK) {
+            if (!mIndexFile.isFile()) return false;
+
+            DataInputStream inputStream = null;
+            try {
+                inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(mIndexFile)));
+                if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) return false;
+
+                String selection = readString(inputStream);
+                String[] selectionArgs = new String[inputStream.readInt()];
+                for (int i = 0; i < selectionArgs.length; i++) {
+                    selectionArgs[i] = inputStream.readUTF();
+                }
+                int count = inputStream.readInt();
+                MediaRows rows = new MediaRows(count);
+                // The bucket names and MIME types repeat across rows, one string is kept per value.
+                Map<String, String> stringPool = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    long id = inputStream.readLong();
+                    AlbumFile albumFile = new AlbumFile();
+                    albumFile.setDateModified(inputStream.readLong());
+                    albumFile.setMediaType(inputStream.readByte());
+                    albumFile.setPath(inputStream.readUTF());
+                    albumFile.setBucketName(pool(stringPool, readString(inputStream)));
+                    albumFile.setMimeType(pool(stringPool, readString(inputStream)));
+                    albumFile.setAddDate(inputStream.readLong());
+                    albumFile.setLatitude(inputStream.readFloat());
+                    albumFile.setLongitude(inputStream.readFloat());
+                    albumFile.setSize(inputStream.readLong());
+                    albumFile.setDuration(inputStream.readLong());
+                    albumFile.setWidth(inputStream.readInt());
+                    albumFile.setHeight(inputStream.readInt());
+                    albumFile.setOrientation(inputStream.readShort());
+                    rows.add(id, albumFile);
+                }
+                mRows = rows;
+                mSelection = selection;
+                mSelectionArgs = selectionArgs;
+                isChanged = false;
+                return true;
+            } catch (IOException e) {
+                mIndexFile.delete();
+                return false;
+            } finally {
+                closeQuietly(inputStream);
+            }
+        }
+    }
+
+    /**
+     * Write the index to the disk if it has been changed since it was loaded.
+     */
+    @WorkerThread
+    public synchronized void save() {
+        if (!isChanged || mRows == null) return;
+
+        synchronized (LOCK) {
+            File directory = mIndexFile.getParentFile();
+            if (directory.exists() && directory.isFile()) directory.delete();
+            if (!directory.exists()) directory.mkdirs();
+
+            File tempFile = new File(directory, INDEX_FILE + ".tmp");
+            DataOutputStream outputStream = null;
+            try {
+                outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(VERSION);
+                writeString(outputStream, mSelection);
+                outputStream.writeInt(mSelectionArgs.length);
+                for (String selectionArg : mSelectionArgs) {
+                    outputStream.writeUTF(selectionArg);
+                }
+                MediaRows rows = mRows;
+                outputStream.writeInt(rows.size());
+                for (int row = 0; row < rows.size(); row++) {
+                    AlbumFile albumFile = rows.getAlbumFile(row);
+                    outputStream.writeLong(rows.getId(row));
+                    outputStream.writeLong(albumFile.getDateModified());
+                    outputStream.writeByte(albumFile.getMediaType());
+                    outputStream.writeUTF(albumFile.getPath());
+                    writeString(outputStream, albumFile.getBucketName());
+                    writeString(outputStream, albumFile.getMimeType());
+                    outputStream.writeLong(albumFile.getAddDate());
+                    outputStream.writeFloat(albumFile.getLatitude());
+                    outputStream.writeFloat(albumFile.getLongitude());
+                    outputStream.writeLong(albumFile.getSize());
+                    outputStream.writeLong(albumFile.getDuration());
+                    outputStream.writeInt(albumFile.getWidth());
+                    outputStream.writeInt(albumFile.getHeight());
+                    outputStream.writeShort(albumFile.getOrientation());
+                }
+                outputStream.close();
+                outputStream = null;
+
+                if (tempFile.renameTo(mIndexFile)) isChanged = false;
+                else tempFile.delete();
+            } catch (IOException e) {
+                tempFile.delete();
+            } finally {
+                closeQuietly(outputStream);
+            }
+        }
+    }
+
+    /**
+     * Reconcile the index with the provider. An empty index reads all the rows,
+     * otherwise only the rows which were added, modified or removed are applied.
+     *
+     * @return true if the index is up to date, false if the provider can not be read.
+     */
+    @WorkerThread
+    public synchronized boolean sync() {
+        // A change during the sync marks it stale again.
+        isStale = false;
+        if (!reconcile()) {
+            isStale = true;
+            return false;
+        }
+        return true;
+    }
+
+    private boolean reconcile() {
+        Uri uri = MediaStore.Files.getContentUri("external");
+        // The rows which the media filter leaves out never cross the binder, one which it starts to leave out is removed.
+        String selection = mSelection == null ? SELECTION : SELECTION + " AND (" + mSelection + ")";
+        MediaRows rows = mRows;
+        if (rows == null || rows.size() == 0) {
+            MediaRows queriedRows = queryRows(uri, selection, mSelectionArgs, MediaReader.SORT_ORDER);
+            if (queriedRows == null) return false;
+            mRows = queriedRows;
+            isChanged = true;
+            return true;
+        }
+
+        int[] rowsById = rows.sortRowsById();
+        long[] sortedIds = new long[rowsById.length];
+        for (int i = 0; i < rowsById.length; i++) {
+            sortedIds[i] = rows.getId(rowsById[i]);
+        }
+        boolean[] unchanged = new boolean[rows.size()];
+
+        List<Long> changedIds = new ArrayList<>();
+        Cursor cursor;
+        try {
+            cursor = mContentResolver.query(uri, VERSIONS, selection, mSelectionArgs, null);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        if (cursor == null) return false;
+        try {
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                long dateModified = cursor.getLong(1);
+                int index = Arrays.binarySearch(sortedIds, id);
+                if (index >= 0 && rows.getAlbumFile(rowsById[index]).getDateModified() == dateModified) {
+                    unchanged[rowsById[index]] = true;
+                } else {
+                    changedIds.add(id);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        MediaRows changedRows = new MediaRows(changedIds.size());
+        for (int start = 0; start < changedIds.size(); start += BATCH_SIZE) {
+            List<Long> batch = changedIds.subList(start, Math.min(start + BATCH_SIZE, changedIds.size()));
+            StringBuilder batchSelection = new StringBuilder(MediaStore.Files.FileColumns._ID).append(" IN (");
+            for (int i = 0; i < batch.size(); i++) {
+                if (i > 0) batchSelection.append(',');
+                batchSelection.append(batch.get(i));
+            }
+            batchSelection.append(')');
+
+            MediaRows batchRows = queryRows(uri, batchSelection.toString(), null, null);
+            if (batchRows == null) return false;
+            for (int row = 0; row < batchRows.size(); row++) changedRows.add(batchRows, row);
+        }
+
+        int removedCount = 0;
+        for (boolean keep : unchanged) {
+            if (!keep) removedCount++;
+        }
+        if (changedRows.size() == 0 && removedCount == 0) return true;
+
+        // The remaining rows keep their order, the few changed ones are sorted and merged in.
+        changedRows = changedRows.sortByDate();
+        MediaRows mergedRows = new MediaRows(rows.size() - removedCount + changedRows.size());
+        int changedRow = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            if (!unchanged[row]) continue;
+
+            while (changedRow < changedRows.size() && MediaRows.compareByDate(changedRows, changedRow, rows, row) < 0) {
+                mergedRows.add(changedRows, changedRow++);
+            }
+            mergedRows.add(rows, row);
+        }
+        while (changedRow < changedRows.size()) {
+            mergedRows.add(changedRows, changedRow++);
+        }
+        mRows = mergedRows;
+        isChanged = true;
+        return true;
+    }
+
+    @Nullable
+    private MediaRows queryRows(Uri uri, String selection, @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        Cursor cursor;
+        try {
+            cursor = mContentResolver.query(uri, ENTRIES, selection, selectionArgs, sortOrder);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (cursor == null) return null;
+
+        MediaRows rows = new MediaRows(cursor.getCount());
+        StringPool stringPool = new StringPool();
+        boolean hasDimensions = ENTRIES.length > 12;
+        try {
+            while (cursor.moveToNext()) {
+                String path = cursor.getString(3);
+                if (path == null) continue;
+
+                boolean isVideo = cursor.getInt(2) == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO;
+                AlbumFile albumFile = new AlbumFile();
+                albumFile.setDateModified(cursor.getLong(1));
+                albumFile.setMediaType(isVideo ? AlbumFile.TYPE_VIDEO : AlbumFile.TYPE_IMAGE);
+                albumFile.setPath(path);
+                albumFile.setBucketName(stringPool.get(cursor, 4));
+                albumFile.setMimeType(stringPool.get(cursor, 5));
+                albumFile.setAddDate(cursor.getLong(6));
+                albumFile.setLatitude(cursor.getFloat(7));
+                albumFile.setLongitude(cursor.getFloat(8));
+                albumFile.setSize(cursor.getLong(9));
+                if (isVideo) albumFile.setDuration(cursor.getLong(10));
+                albumFile.setOrientation(cursor.getInt(11));
+                if (hasDimensions) {
+                    albumFile.setWidth(cursor.getInt(12));
+                    albumFile.setHeight(cursor.getInt(13));
+                }
+                rows.add(cursor.getLong(0), albumFile);
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    @Nullable
+    private static String pool(Map<String, String> stringPool, @Nullable String value) {
+        if (value == null) return null;
+
+        String pooled = stringPool.get(value);
+        if (pooled != null) return pooled;
+        stringPool.put(value, value);
+        return value;
+    }
+
+    private static String readString(DataInputStream inputStream) throws IOException {
+        return inputStream.readBoolean() ? inputStream.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream outputStream, String value) throws IOException {
+        outputStream.writeBoolean(value != null);
+        if (value != null) outputStream.writeUTF(value);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
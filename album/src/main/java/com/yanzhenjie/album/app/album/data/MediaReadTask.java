@@ -15,11 +15,13 @@
  */
 package com.yanzhenjie.album.app.album.data;
 
+import android.content.Context;
 import android.os.AsyncTask;
 
 import com.yanzhenjie.album.Album;
 import com.yanzhenjie.album.AlbumFile;
 import com.yanzhenjie.album.AlbumFolder;
+import com.yanzhenjie.album.R;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -28,20 +30,30 @@ import java.util.List;
  * <p>Image scan task.</p>
  * Created by Yan Zhenjie on 2017/3/28.
  */
-public class MediaReadTask extends AsyncTask<Void, Void, MediaReadTask.ResultWrapper> {
+public class MediaReadTask extends AsyncTask<Void, MediaReadTask.PageWrapper, Void> {
 
     public interface Callback {
         /**
-         * Callback the results.
+         * Callback a page of the results, the folders are updated in place as the pages arrive.
          *
          * @param albumFolders album folder list.
+         * @param pageFiles    files of the page.
+         * @param checkedFiles checked files of the page.
          */
-        void onScanCallback(ArrayList<AlbumFolder> albumFolders, ArrayList<AlbumFile> checkedFiles);
+        void onScanPage(ArrayList<AlbumFolder> albumFolders, ArrayList<AlbumFile> pageFiles, ArrayList<AlbumFile> checkedFiles);
+
+        /**
+         * Callback the results, all pages have been delivered.
+         *
+         * @param folderCollector the collector of the album folders.
+         * @param mediaVersions   the versions of the files which were read.
+         */
+        void onScanCallback(FolderCollector folderCollector, MediaVersions mediaVersions);
     }
 
-    static class ResultWrapper {
-        private ArrayList<AlbumFolder> mAlbumFolders;
+    static class PageWrapper {
         private ArrayList<AlbumFile> mAlbumFiles;
+        private ArrayList<AlbumFile> mCheckedFiles;
     }
 
     private int mFunction;
@@ -49,56 +61,85 @@ public class MediaReadTask extends AsyncTask<Void, Void, MediaReadTask.ResultWra
     private MediaReader mMediaReader;
     private Callback mCallback;
 
-    public MediaReadTask(int function, List<AlbumFile> checkedFiles, MediaReader mediaReader, Callback callback) {
+    private MediaIndex mMediaIndex;
+    private FolderCollector mFolderCollector;
+    private MediaVersions mMediaVersions;
+
+    public MediaReadTask(Context context, int function, List<AlbumFile> checkedFiles, MediaReader mediaReader, Callback callback) {
         this.mFunction = function;
         this.mCheckedFiles = checkedFiles;
         this.mMediaReader = mediaReader;
         this.mCallback = callback;
-    }
 
-    @Override
-    protected ResultWrapper doInBackground(Void... params) {
-        ArrayList<AlbumFolder> albumFolders;
-        switch (mFunction) {
+        String allFolderName;
+        switch (function) {
             case Album.FUNCTION_CHOICE_IMAGE: {
-                albumFolders = mMediaReader.getAllImage();
+                allFolderName = context.getString(R.string.album_all_images);
                 break;
             }
             case Album.FUNCTION_CHOICE_VIDEO: {
-                albumFolders = mMediaReader.getAllVideo();
+                allFolderName = context.getString(R.string.album_all_videos);
                 break;
             }
             case Album.FUNCTION_CHOICE_ALBUM: {
-                albumFolders = mMediaReader.getAllMedia();
+                allFolderName = context.getString(R.string.album_all_images_videos);
                 break;
             }
             default: {
                 throw new AssertionError("This should not be the case.");
             }
         }
+        this.mMediaIndex = Album.getAlbumConfig().getMediaIndex(context);
+        this.mFolderCollector = new FolderCollector(allFolderName);
+        this.mMediaVersions = new MediaVersions();
+    }
 
-        ArrayList<AlbumFile> checkedFiles = new ArrayList<>();
-
-        if (mCheckedFiles != null && !mCheckedFiles.isEmpty()) {
-            List<AlbumFile> albumFiles = albumFolders.get(0).getAlbumFiles();
-            for (AlbumFile checkAlbumFile : mCheckedFiles) {
-                for (int i = 0; i < albumFiles.size(); i++) {
-                    AlbumFile albumFile = albumFiles.get(i);
-                    if (checkAlbumFile.equals(albumFile)) {
-                        albumFile.setChecked(true);
-                        checkedFiles.add(albumFile);
+    @Override
+    protected Void doInBackground(Void... params) {
+        MediaReader.PageCallback pageCallback = new MediaReader.PageCallback() {
+            @Override
+            public boolean onPage(ArrayList<AlbumFile> albumFiles) {
+                ArrayList<AlbumFile> checkedFiles = new ArrayList<>();
+                if (mCheckedFiles != null && !mCheckedFiles.isEmpty()) {
+                    for (AlbumFile albumFile : albumFiles) {
+                        if (mCheckedFiles.contains(albumFile)) {
+                            albumFile.setChecked(true);
+                            checkedFiles.add(albumFile);
+                        }
                     }
                 }
+
+                PageWrapper wrapper = new PageWrapper();
+                wrapper.mAlbumFiles = albumFiles;
+                wrapper.mCheckedFiles = checkedFiles;
+                publishProgress(wrapper);
+                return !isCancelled();
             }
+        };
+
+        if (mMediaIndex == null) {
+            mMediaReader.scanPages(mFunction, mMediaVersions, pageCallback);
+            return null;
+        }
+
+        // A repeat open only applies the changes since the last one, or none if nothing has changed.
+        if (!mMediaReader.readIndex(mMediaIndex, mFunction, mMediaVersions, pageCallback)) {
+            // The first open builds the index from the rows of its own scan, the provider is read once.
+            mMediaReader.scanIndexPages(mMediaIndex, mFunction, mMediaVersions, pageCallback);
+        }
+        return null;
+    }
+
+    @Override
+    protected void onProgressUpdate(PageWrapper... values) {
+        for (PageWrapper wrapper : values) {
+            mFolderCollector.addAll(wrapper.mAlbumFiles);
+            mCallback.onScanPage(mFolderCollector.getAlbumFolders(), wrapper.mAlbumFiles, wrapper.mCheckedFiles);
         }
-        ResultWrapper wrapper = new ResultWrapper();
-        wrapper.mAlbumFolders = albumFolders;
-        wrapper.mAlbumFiles = checkedFiles;
-        return wrapper;
     }
 
     @Override
-    protected void onPostExecute(ResultWrapper wrapper) {
-        mCallback.onScanCallback(wrapper.mAlbumFolders, wrapper.mAlbumFiles);
+    protected void onPostExecute(Void result) {
+        mCallback.onScanCallback(mFolderCollector, mMediaVersions);
     }
 }
\ No newline at end of file
@@ -18,117 +18,183 @@ package com.yanzhenjie.album.app.album.data;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
 import android.provider.MediaStore;
+import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 import android.text.TextUtils;
 
+import com.yanzhenjie.album.Album;
 import com.yanzhenjie.album.AlbumFile;
 import com.yanzhenjie.album.AlbumFolder;
 import com.yanzhenjie.album.Filter;
 import com.yanzhenjie.album.FilterWithReason;
+import com.yanzhenjie.album.MediaFilter;
 import com.yanzhenjie.album.R;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Created by YanZhenjie on 2017/8/15.
  */
 public class MediaReader {
 
+    /**
+     * The number of files read from the provider per page.
+     */
+    public static final int PAGE_SIZE = 120;
+
+    public interface PageCallback {
+        /**
+         * Called on the worker thread when a page has been read.
+         *
+         * @param albumFiles the files of the page, sorted by the date added descending.
+         * @return true to read the next page, false to stop scanning.
+         */
+        boolean onPage(ArrayList<AlbumFile> albumFiles);
+    }
+
+    public interface RowCallback {
+        /**
+         * Called on the worker thread for each row which has been read.
+         *
+         * @param albumFile the file, or null if it is filtered out.
+         */
+        void onRow(long id, long dateModified, String path, @Nullable AlbumFile albumFile);
+    }
+
+    private static final String PAGE_SELECTION = "(" + MediaStore.MediaColumns.DATE_ADDED + "<? OR (" +
+            MediaStore.MediaColumns.DATE_ADDED + "=? AND " + MediaStore.MediaColumns._ID + "<?))";
+    /**
+     * Read the media type of each row from the {@link MediaStore.Files.FileColumns#MEDIA_TYPE} column.
+     */
+    static final int TYPE_ANY = 0;
+
+    static final String SORT_ORDER = MediaStore.MediaColumns.DATE_ADDED + " DESC, " +
+            MediaStore.MediaColumns._ID + " DESC";
+
     private Context mContext;
 
     private Filter<Long> mSizeFilter;
     private Filter<String> mMimeFilter;
     private FilterWithReason<Long> mDurationFilter;
+    private MediaFilter mMediaFilter;
     private boolean mFilterVisibility;
 
-    public MediaReader(Context context, Filter<Long> sizeFilter, Filter<String> mimeFilter, FilterWithReason<Long> durationFilter, boolean filterVisibility) {
+    public MediaReader(Context context, Filter<Long> sizeFilter, Filter<String> mimeFilter, FilterWithReason<Long> durationFilter,
+                       @Nullable MediaFilter mediaFilter, boolean filterVisibility) {
         this.mContext = context;
 
         this.mSizeFilter = sizeFilter;
         this.mMimeFilter = mimeFilter;
         this.mDurationFilter = durationFilter;
+        this.mMediaFilter = mediaFilter;
         this.mFilterVisibility = filterVisibility;
     }
 
     /**
      * Image attribute.
      */
-    private static final String[] IMAGES = {
+    private static final String[] IMAGES = projection(
             MediaStore.Images.Media.DATA,
             MediaStore.Images.Media.BUCKET_DISPLAY_NAME,
             MediaStore.Images.Media.MIME_TYPE,
             MediaStore.Images.Media.DATE_ADDED,
             MediaStore.Images.Media.LATITUDE,
             MediaStore.Images.Media.LONGITUDE,
-            MediaStore.Images.Media.SIZE
-    };
+            MediaStore.Images.Media.SIZE,
+            MediaStore.Images.Media.ORIENTATION
+    );
 
     /**
-     * Scan for image files.
+     * Complete a projection with the dimensions where the provider has them,
+     * the date modified and the id are always the last two columns.
      */
-    @WorkerThread
-    private void scanImageFile(Map<String, AlbumFolder> albumFolderMap, AlbumFolder allFileFolder) {
-        ContentResolver contentResolver = mContext.getContentResolver();
-        Cursor cursor = contentResolver.query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                IMAGES,
-                null,
-                null,
-                null);
+    private static String[] projection(String... columns) {
+        List<String> projection = new ArrayList<>(Arrays.asList(columns));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            projection.add(MediaStore.MediaColumns.WIDTH);
+            projection.add(MediaStore.MediaColumns.HEIGHT);
+        }
+        projection.add(MediaStore.MediaColumns.DATE_MODIFIED);
+        projection.add(MediaStore.MediaColumns._ID);
+        return projection.toArray(new String[projection.size()]);
+    }
 
-        if (cursor != null) {
-            while (cursor.moveToNext()) {
-                String path = cursor.getString(0);
-                String bucketName = cursor.getString(1);
-                String mimeType = cursor.getString(2);
-                long addDate = cursor.getLong(3);
-                float latitude = cursor.getFloat(4);
-                float longitude = cursor.getFloat(5);
-                long size = cursor.getLong(6);
-
-                AlbumFile imageFile = new AlbumFile();
-                imageFile.setMediaType(AlbumFile.TYPE_IMAGE);
-                imageFile.setPath(path);
-                imageFile.setBucketName(bucketName);
-                imageFile.setMimeType(mimeType);
-                imageFile.setAddDate(addDate);
-                imageFile.setLatitude(latitude);
-                imageFile.setLongitude(longitude);
-                imageFile.setSize(size);
-
-                if (mSizeFilter != null && mSizeFilter.filter(size)) {
-                    if (!mFilterVisibility) continue;
-                    imageFile.setDisable(true);
-                }
-                if (mMimeFilter != null && mMimeFilter.filter(mimeType)) {
-                    if (!mFilterVisibility) continue;
-                    imageFile.setDisable(true);
-                }
+    /**
+     * The positions of the columns which are not in every projection, -1 if the projection has no such column.
+     * The first seven columns are the same in every projection.
+     */
+    private static class Columns {
+
+        private final int mDuration;
+        private final int mMediaType;
+        private final int mOrientation;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mDateModified;
+        private final int mId;
+
+        private Columns(String[] projection) {
+            List<String> columns = Arrays.asList(projection);
+            this.mDuration = columns.indexOf(MediaStore.Video.Media.DURATION);
+            this.mMediaType = columns.indexOf(MediaStore.Files.FileColumns.MEDIA_TYPE);
+            this.mOrientation = columns.indexOf(MediaStore.Images.Media.ORIENTATION);
+            this.mWidth = columns.indexOf(MediaStore.MediaColumns.WIDTH);
+            this.mHeight = columns.indexOf(MediaStore.MediaColumns.HEIGHT);
+            this.mDateModified = columns.indexOf(MediaStore.MediaColumns.DATE_MODIFIED);
+            this.mId = columns.indexOf(MediaStore.MediaColumns._ID);
+        }
+    }
 
-                allFileFolder.addAlbumFile(imageFile);
-                AlbumFolder albumFolder = albumFolderMap.get(bucketName);
+    /**
+     * Read the dimensions of the file, so its thumbnail is built without reading them from the file.
+     */
+    private static void readDimensions(Cursor cursor, Columns columns, AlbumFile albumFile) {
+        if (columns.mWidth < 0 || columns.mHeight < 0) return;
 
-                if (albumFolder != null)
-                    albumFolder.addAlbumFile(imageFile);
-                else {
-                    albumFolder = new AlbumFolder();
-                    albumFolder.setName(bucketName);
-                    albumFolder.addAlbumFile(imageFile);
+        albumFile.setWidth(cursor.getInt(columns.mWidth));
+        albumFile.setHeight(cursor.getInt(columns.mHeight));
+        if (columns.mOrientation >= 0) albumFile.setOrientation(cursor.getInt(columns.mOrientation));
+    }
 
-                    albumFolderMap.put(bucketName, albumFolder);
-                }
-            }
-            cursor.close();
-        }
+    /**
+     * Read the image at the current position of the cursor, the filters are not applied.
+     *
+     * @param stringPool the pool of the bucket names and MIME types of the scan.
+     */
+    private static AlbumFile readImageFile(Cursor cursor, Columns columns, StringPool stringPool) {
+        String path = cursor.getString(0);
+        String bucketName = stringPool.get(cursor, 1);
+        String mimeType = stringPool.get(cursor, 2);
+        long addDate = cursor.getLong(3);
+        float latitude = cursor.getFloat(4);
+        float longitude = cursor.getFloat(5);
+        long size = cursor.getLong(6);
+
+        AlbumFile imageFile = new AlbumFile();
+        imageFile.setMediaType(AlbumFile.TYPE_IMAGE);
+        imageFile.setPath(path);
+        imageFile.setBucketName(bucketName);
+        imageFile.setMimeType(mimeType);
+        imageFile.setAddDate(addDate);
+        imageFile.setLatitude(latitude);
+        imageFile.setLongitude(longitude);
+        imageFile.setSize(size);
+        imageFile.setDateModified(cursor.getLong(columns.mDateModified));
+        readDimensions(cursor, columns, imageFile);
+        return imageFile;
     }
 
     /**
      * Video attribute.
      */
-    private static final String[] VIDEOS = {
+    private static final String[] VIDEOS = projection(
             MediaStore.Video.Media.DATA,
             MediaStore.Video.Media.BUCKET_DISPLAY_NAME,
             MediaStore.Video.Media.MIME_TYPE,
@@ -137,72 +203,265 @@ public class MediaReader {
             MediaStore.Video.Media.LONGITUDE,
             MediaStore.Video.Media.SIZE,
             MediaStore.Video.Media.DURATION
-    };
+    );
 
     /**
-     * Scan for image files.
+     * Read the video at the current position of the cursor, the filters are not applied.
+     *
+     * @param stringPool the pool of the bucket names and MIME types of the scan.
      */
-    @WorkerThread
-    private void scanVideoFile(Map<String, AlbumFolder> albumFolderMap, AlbumFolder allFileFolder) {
-        ContentResolver contentResolver = mContext.getContentResolver();
-        Cursor cursor = contentResolver.query(MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                VIDEOS,
-                null,
-                null,
-                null);
+    private static AlbumFile readVideoFile(Cursor cursor, Columns columns, StringPool stringPool) {
+        String path = cursor.getString(0);
+        String bucketName = stringPool.get(cursor, 1);
+        String mimeType = stringPool.get(cursor, 2);
+        long addDate = cursor.getLong(3);
+        float latitude = cursor.getFloat(4);
+        float longitude = cursor.getFloat(5);
+        long size = cursor.getLong(6);
+        long duration = cursor.getLong(columns.mDuration);
+
+        AlbumFile videoFile = new AlbumFile();
+        videoFile.setMediaType(AlbumFile.TYPE_VIDEO);
+        videoFile.setPath(path);
+        videoFile.setBucketName(bucketName);
+        videoFile.setMimeType(mimeType);
+        videoFile.setAddDate(addDate);
+        videoFile.setLatitude(latitude);
+        videoFile.setLongitude(longitude);
+        videoFile.setSize(size);
+        videoFile.setDuration(duration);
+        videoFile.setDateModified(cursor.getLong(columns.mDateModified));
+        readDimensions(cursor, columns, videoFile);
+        return videoFile;
+    }
 
-        if (cursor != null) {
-            while (cursor.moveToNext()) {
-                String path = cursor.getString(0);
-                String bucketName = cursor.getString(1);
-                String mimeType = cursor.getString(2);
-                long addDate = cursor.getLong(3);
-                float latitude = cursor.getFloat(4);
-                float longitude = cursor.getFloat(5);
-                long size = cursor.getLong(6);
-                long duration = cursor.getLong(7);
-
-                AlbumFile videoFile = new AlbumFile();
-                videoFile.setMediaType(AlbumFile.TYPE_VIDEO);
-                videoFile.setPath(path);
-                videoFile.setBucketName(bucketName);
-                videoFile.setMimeType(mimeType);
-                videoFile.setAddDate(addDate);
-                videoFile.setLatitude(latitude);
-                videoFile.setLongitude(longitude);
-                videoFile.setSize(size);
-                videoFile.setDuration(duration);
-
-                if (mSizeFilter != null && mSizeFilter.filter(size)) {
-                    if (!mFilterVisibility) continue;
-                    videoFile.setDisable(true);
-                }
-                if (mMimeFilter != null && mMimeFilter.filter(mimeType)) {
-                    if (!mFilterVisibility) continue;
-                    videoFile.setDisable(true);
-                }
-                if (mDurationFilter != null) {
-                    String reason = mDurationFilter.filter(duration);
-                    if (!TextUtils.isEmpty(reason)) {
-                        if (!mFilterVisibility) continue;
-                        videoFile.setDisableReason(reason);
-                    }
-                }
+    /**
+     * Apply the filters to the file, a filtered file is disabled when the filtered files are visible.
+     *
+     * @return false if the file is filtered out, otherwise true.
+     */
+    private boolean applyFilters(AlbumFile albumFile) {
+        if (mMediaFilter != null && mMediaFilter.filter(albumFile)) {
+            if (!mFilterVisibility) return false;
+            albumFile.setDisable(true);
+        }
+        if (mSizeFilter != null && mSizeFilter.filter(albumFile.getSize())) {
+            if (!mFilterVisibility) return false;
+            albumFile.setDisable(true);
+        }
+        if (mMimeFilter != null && mMimeFilter.filter(albumFile.getMimeType())) {
+            if (!mFilterVisibility) return false;
+            albumFile.setDisable(true);
+        }
+        if (mDurationFilter != null && albumFile.getMediaType() == AlbumFile.TYPE_VIDEO) {
+            String reason = mDurationFilter.filter(albumFile.getDuration());
+            if (!TextUtils.isEmpty(reason)) {
+                if (!mFilterVisibility) return false;
+                albumFile.setDisableReason(reason);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Image and video attribute, the first columns are in the same position as {@link #IMAGES} and {@link #VIDEOS}.
+     */
+    private static final String[] FILES = projection(
+            MediaStore.Files.FileColumns.DATA,
+            MediaStore.Images.Media.BUCKET_DISPLAY_NAME,
+            MediaStore.Files.FileColumns.MIME_TYPE,
+            MediaStore.Files.FileColumns.DATE_ADDED,
+            MediaStore.Images.Media.LATITUDE,
+            MediaStore.Images.Media.LONGITUDE,
+            MediaStore.Files.FileColumns.SIZE,
+            MediaStore.Video.Media.DURATION,
+            MediaStore.Files.FileColumns.MEDIA_TYPE,
+            MediaStore.Images.Media.ORIENTATION
+    );
 
-                allFileFolder.addAlbumFile(videoFile);
-                AlbumFolder albumFolder = albumFolderMap.get(bucketName);
+    private static final String FILES_SELECTION = MediaStore.Files.FileColumns.MEDIA_TYPE + " IN (" +
+            MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE + "," + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO + ")";
 
-                if (albumFolder != null)
-                    albumFolder.addAlbumFile(videoFile);
-                else {
-                    albumFolder = new AlbumFolder();
-                    albumFolder.setName(bucketName);
-                    albumFolder.addAlbumFile(videoFile);
+    /**
+     * Read the file at the current position of the cursor.
+     *
+     * @param mediaType {@link AlbumFile#TYPE_IMAGE}, {@link AlbumFile#TYPE_VIDEO} or {@link #TYPE_ANY}.
+     * @return the file, or null if it is filtered out.
+     */
+    @Nullable
+    private AlbumFile readFile(Cursor cursor, int mediaType, Columns columns, StringPool stringPool) {
+        AlbumFile albumFile = readRawFile(cursor, readMediaType(cursor, mediaType, columns), columns, stringPool);
+        return applyFilters(albumFile) ? albumFile : null;
+    }
+
+    /**
+     * Read the file at the current position of the cursor, the filters are not applied.
+     *
+     * @param mediaType {@link AlbumFile#TYPE_IMAGE} or {@link AlbumFile#TYPE_VIDEO}.
+     */
+    private static AlbumFile readRawFile(Cursor cursor, int mediaType, Columns columns, StringPool stringPool) {
+        // The duration is only read for the video rows.
+        return mediaType == AlbumFile.TYPE_VIDEO ? readVideoFile(cursor, columns, stringPool) : readImageFile(cursor, columns, stringPool);
+    }
 
-                    albumFolderMap.put(bucketName, albumFolder);
+    /**
+     * Get the media type of the row at the current position of the cursor.
+     *
+     * @param mediaType {@link AlbumFile#TYPE_IMAGE}, {@link AlbumFile#TYPE_VIDEO} or {@link #TYPE_ANY}.
+     * @return {@link AlbumFile#TYPE_IMAGE} or {@link AlbumFile#TYPE_VIDEO}.
+     */
+    private static int readMediaType(Cursor cursor, int mediaType, Columns columns) {
+        if (mediaType != TYPE_ANY) return mediaType;
+        boolean isVideo = cursor.getInt(columns.mMediaType) == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO;
+        return isVideo ? AlbumFile.TYPE_VIDEO : AlbumFile.TYPE_IMAGE;
+    }
+
+    /**
+     * Create the sources of the pictures and videos. One query on the files table is used,
+     * or one query per table when the files table can not be read.
+     */
+    private MediaSource[] createMediaSources(int pageSize, Recorder recorder) {
+        StringPool stringPool = new StringPool();
+        MediaSource filesSource = createSource(MediaStore.Files.getContentUri("external"), FILES, FILES_SELECTION, TYPE_ANY, pageSize,
+                stringPool, recorder);
+        filesSource.peek();
+        if (!filesSource.isUnavailable()) return new MediaSource[]{filesSource};
+
+        filesSource.close();
+        return new MediaSource[]{createImageSource(pageSize, stringPool, recorder), createVideoSource(pageSize, stringPool, recorder)};
+    }
+
+    private MediaSource createImageSource(int pageSize, StringPool stringPool, Recorder recorder) {
+        return createSource(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, IMAGES, null, AlbumFile.TYPE_IMAGE, pageSize, stringPool,
+                recorder);
+    }
+
+    private MediaSource createVideoSource(int pageSize, StringPool stringPool, Recorder recorder) {
+        return createSource(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, VIDEOS, null, AlbumFile.TYPE_VIDEO, pageSize, stringPool,
+                recorder);
+    }
+
+    /**
+     * Create a source, the hidden files of the media filter are left out by the provider.
+     */
+    private MediaSource createSource(Uri uri, String[] projection, @Nullable String selection, int mediaType, int pageSize,
+                                     StringPool stringPool, Recorder recorder) {
+        List<String> selectionArgs = new ArrayList<>();
+        selection = filterSelection(selection, mediaType, selectionArgs);
+        return new MediaSource(uri, projection, selection, selectionArgs.toArray(new String[selectionArgs.size()]), mediaType,
+                pageSize, stringPool, recorder);
+    }
+
+    /**
+     * Add the selection of the media filter to a selection, so the provider leaves out the hidden files.
+     *
+     * @param selection     the selection of the rows, may be null.
+     * @param mediaType     {@link AlbumFile#TYPE_IMAGE}, {@link AlbumFile#TYPE_VIDEO} or {@link #TYPE_ANY}.
+     * @param selectionArgs the args of the selection, the args of the media filter are added to it.
+     * @return the selection, or null if every row is read.
+     */
+    @Nullable
+    private String filterSelection(@Nullable String selection, int mediaType, List<String> selectionArgs) {
+        // A visible filtered file is read and disabled, only hidden files can be left out.
+        if (mMediaFilter == null || mFilterVisibility) return selection;
+
+        String filterSelection = buildFilterSelection(mMediaFilter, mediaType, selectionArgs);
+        if (filterSelection == null) return selection;
+        return selection == null ? filterSelection : "(" + selection + ") AND " + filterSelection;
+    }
+
+    /**
+     * Compile the media filter into a selection which keeps the same rows as {@link MediaFilter#filter(AlbumFile)}.
+     *
+     * @param mediaType     {@link AlbumFile#TYPE_IMAGE}, {@link AlbumFile#TYPE_VIDEO} or {@link #TYPE_ANY}.
+     * @param selectionArgs the args of the selection are added to it.
+     * @return the selection, or null if the filter keeps every row.
+     */
+    @Nullable
+    static String buildFilterSelection(MediaFilter filter, int mediaType, List<String> selectionArgs) {
+        List<String> clauses = new ArrayList<>();
+        if (filter.getMinSize() > 0) {
+            clauses.add(MediaStore.MediaColumns.SIZE + ">=?");
+            selectionArgs.add(Long.toString(filter.getMinSize()));
+        }
+        if (filter.getMaxSize() < Long.MAX_VALUE) {
+            clauses.add("(" + MediaStore.MediaColumns.SIZE + " IS NULL OR " + MediaStore.MediaColumns.SIZE + "<=?)");
+            selectionArgs.add(Long.toString(filter.getMaxSize()));
+        }
+
+        List<String> allowMimeTypes = filter.getAllowMimeTypes();
+        if (!allowMimeTypes.isEmpty()) {
+            clauses.add(MediaStore.MediaColumns.MIME_TYPE + " IN (" + placeholders(allowMimeTypes.size()) + ")");
+            selectionArgs.addAll(allowMimeTypes);
+        }
+        List<String> denyMimeTypes = filter.getDenyMimeTypes();
+        if (!denyMimeTypes.isEmpty()) {
+            clauses.add("(" + MediaStore.MediaColumns.MIME_TYPE + " IS NULL OR " + MediaStore.MediaColumns.MIME_TYPE +
+                    " NOT IN (" + placeholders(denyMimeTypes.size()) + "))");
+            selectionArgs.addAll(denyMimeTypes);
+        }
+
+        // The duration only applies to the videos, the images table has no such column.
+        if (mediaType != AlbumFile.TYPE_IMAGE) {
+            List<String> durationClauses = new ArrayList<>();
+            if (filter.getMinDuration() > 0) {
+                durationClauses.add(MediaStore.Video.Media.DURATION + ">=?");
+                selectionArgs.add(Long.toString(filter.getMinDuration()));
+            }
+            if (filter.getMaxDuration() < Long.MAX_VALUE) {
+                durationClauses.add("(" + MediaStore.Video.Media.DURATION + " IS NULL OR " + MediaStore.Video.Media.DURATION + "<=?)");
+                selectionArgs.add(Long.toString(filter.getMaxDuration()));
+            }
+            if (!durationClauses.isEmpty()) {
+                String durationClause = and(durationClauses);
+                if (mediaType == TYPE_ANY) {
+                    durationClause = "(" + MediaStore.Files.FileColumns.MEDIA_TYPE + "<>" +
+                            MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO + " OR (" + durationClause + "))";
                 }
+                clauses.add(durationClause);
+            }
+        }
+        return clauses.isEmpty() ? null : and(clauses);
+    }
+
+    private static String and(List<String> clauses) {
+        StringBuilder builder = new StringBuilder(clauses.get(0));
+        for (int i = 1; i < clauses.size(); i++) builder.append(" AND ").append(clauses.get(i));
+        return builder.toString();
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder("?");
+        for (int i = 1; i < count; i++) builder.append(",?");
+        return builder.toString();
+    }
+
+    /**
+     * Scan the files of the function in the library page by page.
+     *
+     * @param function one of {@link Album#FUNCTION_CHOICE_IMAGE}, {@link Album#FUNCTION_CHOICE_VIDEO}
+     *                 or {@link Album#FUNCTION_CHOICE_ALBUM}.
+     * @param versions the versions of the rows read are added to it.
+     */
+    @WorkerThread
+    public void scanPages(int function, MediaVersions versions, PageCallback callback) {
+        Recorder recorder = new Recorder(versions, null, TYPE_ANY);
+        switch (function) {
+            case Album.FUNCTION_CHOICE_IMAGE: {
+                scanImagePages(recorder, callback);
+                break;
+            }
+            case Album.FUNCTION_CHOICE_VIDEO: {
+                scanVideoPages(recorder, callback);
+                break;
+            }
+            case Album.FUNCTION_CHOICE_ALBUM: {
+                scanMediaPages(recorder, callback);
+                break;
+            }
+            default: {
+                throw new AssertionError("This should not be the case.");
             }
-            cursor.close();
         }
     }
 
@@ -211,72 +470,545 @@ public class MediaReader {
      */
     @WorkerThread
     public ArrayList<AlbumFolder> getAllImage() {
-        Map<String, AlbumFolder> albumFolderMap = new HashMap<>();
-        AlbumFolder allFileFolder = new AlbumFolder();
-        allFileFolder.setChecked(true);
-        allFileFolder.setName(mContext.getString(R.string.album_all_images));
+        return readAll(Album.FUNCTION_CHOICE_IMAGE, mContext.getString(R.string.album_all_images));
+    }
 
-        scanImageFile(albumFolderMap, allFileFolder);
+    /**
+     * Scan the list of videos in the library.
+     */
+    @WorkerThread
+    public ArrayList<AlbumFolder> getAllVideo() {
+        return readAll(Album.FUNCTION_CHOICE_VIDEO, mContext.getString(R.string.album_all_videos));
+    }
 
-        ArrayList<AlbumFolder> albumFolders = new ArrayList<>();
-        Collections.sort(allFileFolder.getAlbumFiles());
-        albumFolders.add(allFileFolder);
+    /**
+     * Get all the multimedia files, including videos and pictures.
+     */
+    @WorkerThread
+    public ArrayList<AlbumFolder> getAllMedia() {
+        return readAll(Album.FUNCTION_CHOICE_ALBUM, mContext.getString(R.string.album_all_images_videos));
+    }
 
-        for (Map.Entry<String, AlbumFolder> folderEntry : albumFolderMap.entrySet()) {
-            AlbumFolder albumFolder = folderEntry.getValue();
-            Collections.sort(albumFolder.getAlbumFiles());
-            albumFolders.add(albumFolder);
+    /**
+     * Read all the pages of the function into folders, the files are in the order of the provider.
+     */
+    private ArrayList<AlbumFolder> readAll(int function, String allFolderName) {
+        final FolderCollector folderCollector = new FolderCollector(allFolderName);
+        scanPages(function, new MediaVersions(), new PageCallback() {
+            @Override
+            public boolean onPage(ArrayList<AlbumFile> albumFiles) {
+                folderCollector.addAll(albumFiles);
+                return true;
+            }
+        });
+        return folderCollector.getAlbumFolders();
+    }
+
+    /**
+     * Scan the pictures in the library page by page.
+     */
+    @WorkerThread
+    private void scanImagePages(Recorder recorder, PageCallback callback) {
+        MediaSource imageSource = createImageSource(PAGE_SIZE, new StringPool(), recorder);
+        try {
+            readPages(callback, imageSource);
+        } finally {
+            imageSource.close();
         }
-        return albumFolders;
     }
 
     /**
-     * Scan the list of videos in the library.
+     * Scan the videos in the library page by page.
      */
     @WorkerThread
-    public ArrayList<AlbumFolder> getAllVideo() {
-        Map<String, AlbumFolder> albumFolderMap = new HashMap<>();
-        AlbumFolder allFileFolder = new AlbumFolder();
-        allFileFolder.setChecked(true);
-        allFileFolder.setName(mContext.getString(R.string.album_all_videos));
+    private void scanVideoPages(Recorder recorder, PageCallback callback) {
+        MediaSource videoSource = createVideoSource(PAGE_SIZE, new StringPool(), recorder);
+        try {
+            readPages(callback, videoSource);
+        } finally {
+            videoSource.close();
+        }
+    }
 
-        scanVideoFile(albumFolderMap, allFileFolder);
+    /**
+     * Scan the pictures and videos in the library page by page.
+     */
+    @WorkerThread
+    private void scanMediaPages(Recorder recorder, PageCallback callback) {
+        MediaSource[] sources = createMediaSources(PAGE_SIZE, recorder);
+        try {
+            readPages(callback, sources);
+        } finally {
+            for (MediaSource source : sources) source.close();
+        }
+    }
 
-        ArrayList<AlbumFolder> albumFolders = new ArrayList<>();
-        Collections.sort(allFileFolder.getAlbumFiles());
-        albumFolders.add(allFileFolder);
+    /**
+     * Scan the files of the function in the library page by page, and add every picture and video row which the
+     * media filter keeps to the index. The delivered files are the files of the index, no copy is made.
+     * The other filters are applied in memory, so the index also has the rows which they leave out,
+     * and the files of the other functions are read but not delivered.
+     *
+     * @param function one of {@link Album#FUNCTION_CHOICE_IMAGE}, {@link Album#FUNCTION_CHOICE_VIDEO}
+     *                 or {@link Album#FUNCTION_CHOICE_ALBUM}.
+     * @param versions the versions of the rows read are added to it.
+     */
+    @WorkerThread
+    public void scanIndexPages(MediaIndex index, int function, MediaVersions versions, PageCallback callback) {
+        int mediaType;
+        switch (function) {
+            case Album.FUNCTION_CHOICE_IMAGE: {
+                mediaType = AlbumFile.TYPE_IMAGE;
+                break;
+            }
+            case Album.FUNCTION_CHOICE_VIDEO: {
+                mediaType = AlbumFile.TYPE_VIDEO;
+                break;
+            }
+            case Album.FUNCTION_CHOICE_ALBUM: {
+                mediaType = TYPE_ANY;
+                break;
+            }
+            default: {
+                throw new AssertionError("This should not be the case.");
+            }
+        }
 
-        for (Map.Entry<String, AlbumFolder> folderEntry : albumFolderMap.entrySet()) {
-            AlbumFolder albumFolder = folderEntry.getValue();
-            Collections.sort(albumFolder.getAlbumFiles());
-            albumFolders.add(albumFolder);
+        List<String> selectionArgs = new ArrayList<>();
+        String selection = filterSelection(null, TYPE_ANY, selectionArgs);
+        MediaRows rows = index.startBuild();
+        MediaSource[] sources = createMediaSources(PAGE_SIZE, new Recorder(versions, rows, mediaType));
+        boolean isComplete = false;
+        try {
+            if (readPages(callback, sources)) {
+                isComplete = true;
+                for (MediaSource source : sources) {
+                    if (source.isFailed()) isComplete = false;
+                }
+            }
+        } finally {
+            for (MediaSource source : sources) source.close();
         }
-        return albumFolders;
+        // The rows of a scan which was stopped or could not read a page are not kept.
+        index.finishBuild(rows, selection, selectionArgs.toArray(new String[selectionArgs.size()]), isComplete);
     }
 
     /**
-     * Get all the multimedia files, including videos and pictures.
+     * Read the files of the index, they are delivered as one page. The index is reconciled with the provider first,
+     * only the rows which the media filter keeps are read. The delivered files are the files of the index,
+     * so no file is created for a row which has not changed.
+     *
+     * @param function one of {@link Album#FUNCTION_CHOICE_IMAGE}, {@link Album#FUNCTION_CHOICE_VIDEO}
+     *                 or {@link Album#FUNCTION_CHOICE_ALBUM}.
+     * @param versions the versions of the rows read are added to it.
+     * @return false if the index has to be built by {@link #scanIndexPages(MediaIndex, int, MediaVersions, PageCallback)}.
      */
     @WorkerThread
-    public ArrayList<AlbumFolder> getAllMedia() {
-        Map<String, AlbumFolder> albumFolderMap = new HashMap<>();
-        AlbumFolder allFileFolder = new AlbumFolder();
-        allFileFolder.setChecked(true);
-        allFileFolder.setName(mContext.getString(R.string.album_all_images_videos));
+    public boolean readIndex(MediaIndex index, int function, MediaVersions versions, PageCallback callback) {
+        List<String> selectionArgs = new ArrayList<>();
+        String selection = filterSelection(null, TYPE_ANY, selectionArgs);
+        if (!index.update(selection, selectionArgs.toArray(new String[selectionArgs.size()]))) return false;
+        MediaRows rows = index.getRows();
+        if (rows == null) return false;
+
+        ArrayList<AlbumFile> albumFiles = new ArrayList<>(rows.size());
+        for (int row = 0; row < rows.size(); row++) {
+            AlbumFile albumFile = rows.getAlbumFile(row);
+            int mediaType = albumFile.getMediaType();
+            if (function == Album.FUNCTION_CHOICE_IMAGE && mediaType != AlbumFile.TYPE_IMAGE) continue;
+            if (function == Album.FUNCTION_CHOICE_VIDEO && mediaType != AlbumFile.TYPE_VIDEO) continue;
+
+            if (albumFile.isChecked()) {
+                // A file checked by an earlier album may be in its results, it is not changed.
+                albumFile = MediaRows.copyOf(albumFile);
+                rows.setAlbumFile(row, albumFile);
+            } else {
+                albumFile.setDisable(false);
+            }
+            if (applyFilters(albumFile)) {
+                albumFiles.add(albumFile);
+                versions.add(rows.getId(row), albumFile.getDateModified(), albumFile.getPath());
+            } else {
+                versions.add(rows.getId(row), albumFile.getDateModified(), null);
+            }
+        }
+        if (!albumFiles.isEmpty()) callback.onPage(albumFiles);
+        index.save();
+        return true;
+    }
+
+    private static final String[] IDS = {MediaStore.MediaColumns._ID};
+
+    /**
+     * The date modified is in seconds, a row changed in the same second as the last one read is still read.
+     */
+    private static final String MODIFIED_SELECTION = "(" + MediaStore.MediaColumns._ID + ">? OR " +
+            MediaStore.MediaColumns.DATE_MODIFIED + ">=?)";
+
+    /**
+     * Read the ids of the files of the function, the hidden files of the media filter are left out by the provider,
+     * the other filters are not applied.
+     *
+     * @param function one of {@link Album#FUNCTION_CHOICE_IMAGE}, {@link Album#FUNCTION_CHOICE_VIDEO}
+     *                 or {@link Album#FUNCTION_CHOICE_ALBUM}.
+     * @return the ids sorted ascending, or null if the provider can not be read.
+     */
+    @WorkerThread
+    @Nullable
+    public long[] readIds(int function) {
+        switch (function) {
+            case Album.FUNCTION_CHOICE_IMAGE: {
+                return readIds(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, null, AlbumFile.TYPE_IMAGE);
+            }
+            case Album.FUNCTION_CHOICE_VIDEO: {
+                return readIds(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, null, AlbumFile.TYPE_VIDEO);
+            }
+            case Album.FUNCTION_CHOICE_ALBUM: {
+                long[] ids = readIds(MediaStore.Files.getContentUri("external"), FILES_SELECTION, TYPE_ANY);
+                if (ids != null) return ids;
+
+                long[] imageIds = readIds(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, null, AlbumFile.TYPE_IMAGE);
+                long[] videoIds = readIds(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, null, AlbumFile.TYPE_VIDEO);
+                if (imageIds == null || videoIds == null) return null;
+                ids = Arrays.copyOf(imageIds, imageIds.length + videoIds.length);
+                System.arraycopy(videoIds, 0, ids, imageIds.length, videoIds.length);
+                Arrays.sort(ids);
+                return ids;
+            }
+            default: {
+                throw new AssertionError("This should not be the case.");
+            }
+        }
+    }
+
+    @Nullable
+    private long[] readIds(Uri uri, @Nullable String selection, int mediaType) {
+        List<String> selectionArgs = new ArrayList<>();
+        selection = filterSelection(selection, mediaType, selectionArgs);
+        Cursor cursor = query(uri, IDS, selection, selectionArgs.toArray(new String[selectionArgs.size()]));
+        if (cursor == null) return null;
+        try {
+            long[] ids = new long[cursor.getCount()];
+            int count = 0;
+            while (cursor.moveToNext() && count < ids.length) {
+                ids[count++] = cursor.getLong(0);
+            }
+            ids = Arrays.copyOf(ids, count);
+            Arrays.sort(ids);
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Read the files of the function whose id is greater than the given one or whose date modified is not less than
+     * the given one. The hidden files of the media filter are left out by the provider, the ids no longer read
+     * report them. The other filters are applied in memory, so a file which they filter out is still reported.
+     *
+     * @param function one of {@link Album#FUNCTION_CHOICE_IMAGE}, {@link Album#FUNCTION_CHOICE_VIDEO}
+     *                 or {@link Album#FUNCTION_CHOICE_ALBUM}.
+     * @return false if the provider can not be read.
+     */
+    @WorkerThread
+    public boolean readModified(int function, long lastId, long lastDateModified, RowCallback callback) {
+        String[] modifiedArgs = {Long.toString(lastId), Long.toString(lastDateModified)};
+        StringPool stringPool = new StringPool();
+        switch (function) {
+            case Album.FUNCTION_CHOICE_IMAGE: {
+                return readModified(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, IMAGES, null, modifiedArgs,
+                        AlbumFile.TYPE_IMAGE, stringPool, callback);
+            }
+            case Album.FUNCTION_CHOICE_VIDEO: {
+                return readModified(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, VIDEOS, null, modifiedArgs,
+                        AlbumFile.TYPE_VIDEO, stringPool, callback);
+            }
+            case Album.FUNCTION_CHOICE_ALBUM: {
+                if (readModified(MediaStore.Files.getContentUri("external"), FILES, FILES_SELECTION, modifiedArgs,
+                        TYPE_ANY, stringPool, callback)) {
+                    return true;
+                }
+                return readModified(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, IMAGES, null, modifiedArgs,
+                        AlbumFile.TYPE_IMAGE, stringPool, callback)
+                        && readModified(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, VIDEOS, null, modifiedArgs,
+                        AlbumFile.TYPE_VIDEO, stringPool, callback);
+            }
+            default: {
+                throw new AssertionError("This should not be the case.");
+            }
+        }
+    }
+
+    private boolean readModified(Uri uri, String[] projection, @Nullable String selection, String[] modifiedArgs,
+                                 int mediaType, StringPool stringPool, RowCallback callback) {
+        List<String> selectionArgs = new ArrayList<>();
+        selection = filterSelection(selection, mediaType, selectionArgs);
+        selection = selection == null ? MODIFIED_SELECTION : "(" + selection + ") AND " + MODIFIED_SELECTION;
+        selectionArgs.addAll(Arrays.asList(modifiedArgs));
+        Cursor cursor = query(uri, projection, selection, selectionArgs.toArray(new String[selectionArgs.size()]));
+        if (cursor == null) return false;
+
+        Columns columns = new Columns(projection);
+        try {
+            while (cursor.moveToNext()) {
+                String path = cursor.getString(0);
+                if (path == null) continue;
+
+                AlbumFile albumFile = readFile(cursor, mediaType, columns, stringPool);
+                callback.onRow(cursor.getLong(columns.mId), cursor.getLong(columns.mDateModified), path, albumFile);
+            }
+        } finally {
+            cursor.close();
+        }
+        return true;
+    }
+
+    /**
+     * Query the provider without a sort order.
+     *
+     * @return the cursor, or null if the provider can not serve the query.
+     */
+    @Nullable
+    private Cursor query(Uri uri, String[] projection, @Nullable String selection, @Nullable String[] selectionArgs) {
+        try {
+            return mContext.getContentResolver().query(uri, projection, selection, selectionArgs, null);
+        } catch (SQLiteException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            // Newer providers reject the columns and selections they do not know.
+            return null;
+        }
+    }
+
+    /**
+     * Merge the sources, which are each sorted by the date added descending, and deliver them page by page.
+     * The merge is linear, the files are never sorted in memory.
+     *
+     * @return false if the callback has stopped the scan, otherwise true.
+     */
+    private boolean readPages(PageCallback callback, MediaSource... sources) {
+        ArrayList<AlbumFile> page = new ArrayList<>(PAGE_SIZE);
+        while (true) {
+            MediaSource newestSource = null;
+            AlbumFile newestFile = null;
+            for (MediaSource source : sources) {
+                AlbumFile albumFile = source.peek();
+                if (albumFile != null && (newestFile == null || albumFile.getAddDate() > newestFile.getAddDate())) {
+                    newestSource = source;
+                    newestFile = albumFile;
+                }
+            }
+            if (newestSource == null) break;
 
-        scanImageFile(albumFolderMap, allFileFolder);
-        scanVideoFile(albumFolderMap, allFileFolder);
+            page.add(newestSource.poll());
+            if (page.size() >= PAGE_SIZE) {
+                if (!callback.onPage(page)) return false;
+                page = new ArrayList<>(PAGE_SIZE);
+            }
+        }
+        return page.isEmpty() || callback.onPage(page);
+    }
 
-        ArrayList<AlbumFolder> albumFolders = new ArrayList<>();
-        Collections.sort(allFileFolder.getAlbumFiles());
-        albumFolders.add(allFileFolder);
+    /**
+     * Query the rows which are older than the given row, sorted by the date added descending.
+     *
+     * @param selection     the selection of the rows, may be null.
+     * @param selectionArgs the args of the selection.
+     * @param lastDate      the date added of the last row of the previous page.
+     * @param lastId        the id of the last row of the previous page, less than 0 means the first page.
+     * @param limit         the maximum number of rows, less than or equal to 0 means no limit.
+     */
+    @Nullable
+    private Cursor querySorted(Uri uri, String[] projection, @Nullable String selection, String[] selectionArgs,
+                               long lastDate, long lastId, int limit) {
+        if (lastId >= 0) {
+            String date = Long.toString(lastDate);
+            selection = selection == null ? PAGE_SELECTION : "(" + selection + ") AND " + PAGE_SELECTION;
+            String[] pageArgs = new String[selectionArgs.length + 3];
+            System.arraycopy(selectionArgs, 0, pageArgs, 0, selectionArgs.length);
+            pageArgs[selectionArgs.length] = date;
+            pageArgs[selectionArgs.length + 1] = date;
+            pageArgs[selectionArgs.length + 2] = Long.toString(lastId);
+            selectionArgs = pageArgs;
+        }
+        if (selectionArgs.length == 0) selectionArgs = null;
+
+        ContentResolver contentResolver = mContext.getContentResolver();
+        if (limit <= 0) {
+            return contentResolver.query(uri, projection, selection, selectionArgs, SORT_ORDER);
+        }
+        if (Build.VERSION.SDK_INT >= 30) {
+            // The provider no longer accepts a limit clause in the sort order.
+            Bundle queryArgs = new Bundle();
+            queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+            queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, selectionArgs);
+            queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, SORT_ORDER);
+            queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, limit);
+            return contentResolver.query(uri, projection, queryArgs, null);
+        }
+        return contentResolver.query(uri, projection, selection, selectionArgs, SORT_ORDER + " LIMIT " + limit);
+    }
 
-        for (Map.Entry<String, AlbumFolder> folderEntry : albumFolderMap.entrySet()) {
-            AlbumFolder albumFolder = folderEntry.getValue();
-            Collections.sort(albumFolder.getAlbumFiles());
-            albumFolders.add(albumFolder);
+    /**
+     * What the sources keep of the rows they read, besides the files they deliver.
+     */
+    private static class Recorder {
+
+        /**
+         * The versions of the delivered files and of the filtered rows are added to it.
+         */
+        private final MediaVersions mVersions;
+        /**
+         * Every row read is added to it to build the index, may be null.
+         */
+        private final MediaRows mRows;
+        /**
+         * Only the files of this type are delivered, or all of them with {@link #TYPE_ANY}.
+         */
+        private final int mMediaType;
+
+        Recorder(MediaVersions versions, @Nullable MediaRows rows, int mediaType) {
+            this.mVersions = versions;
+            this.mRows = rows;
+            this.mMediaType = mediaType;
         }
-        return albumFolders;
     }
 
+    /**
+     * Reads the rows of one table sorted by the date added descending,
+     * with keyset pagination on the date added and the id when a page size is given.
+     */
+    private class MediaSource {
+
+        private final Uri mUri;
+        private final String[] mProjection;
+        private final String mSelection;
+        private final String[] mSelectionArgs;
+        private final int mMediaType;
+        private final int mPageSize;
+        private final StringPool mStringPool;
+        private final Recorder mRecorder;
+        private final Columns mColumns;
+        private final int mDateIndex;
+        private final int mIdIndex;
+
+        private Cursor mCursor;
+        private int mPageCount;
+        private long mLastDate;
+        private long mLastId = -1;
+        private boolean isExhausted;
+        private boolean isUnavailable;
+        private boolean isFailed;
+
+        private AlbumFile mNext;
+
+        MediaSource(Uri uri, String[] projection, String selection, String[] selectionArgs, int mediaType, int pageSize,
+                    StringPool stringPool, Recorder recorder) {
+            this.mUri = uri;
+            this.mProjection = projection;
+            this.mSelection = selection;
+            this.mSelectionArgs = selectionArgs;
+            this.mMediaType = mediaType;
+            this.mPageSize = pageSize;
+            this.mStringPool = stringPool;
+            this.mRecorder = recorder;
+            this.mColumns = new Columns(projection);
+            this.mDateIndex = 3;
+            this.mIdIndex = projection.length - 1;
+        }
+
+        /**
+         * Get the next file without consuming it.
+         */
+        @Nullable
+        AlbumFile peek() {
+            if (mNext == null) mNext = read();
+            return mNext;
+        }
+
+        /**
+         * Get the next file and consume it.
+         */
+        @Nullable
+        AlbumFile poll() {
+            AlbumFile albumFile = peek();
+            mNext = null;
+            return albumFile;
+        }
+
+        @Nullable
+        private AlbumFile read() {
+            while (true) {
+                if (mCursor == null) {
+                    if (isExhausted) return null;
+                    try {
+                        mCursor = querySorted(mUri, mProjection, mSelection, mSelectionArgs, mLastDate, mLastId, mPageSize);
+                    } catch (SQLiteException e) {
+                        mCursor = null;
+                    } catch (IllegalArgumentException e) {
+                        // Newer providers reject the columns and selections they do not know.
+                        mCursor = null;
+                    }
+                    mPageCount = 0;
+                    if (mCursor == null) {
+                        isUnavailable = mLastId < 0;
+                        isFailed = true;
+                        isExhausted = true;
+                        return null;
+                    }
+                }
+
+                // The limit may be ignored by some providers, so never read beyond one page.
+                if ((mPageSize <= 0 || mPageCount < mPageSize) && mCursor.moveToNext()) {
+                    mPageCount++;
+                    mLastDate = mCursor.getLong(mDateIndex);
+                    mLastId = mCursor.getLong(mIdIndex);
+                    int mediaType = readMediaType(mCursor, mMediaType, mColumns);
+                    if (mRecorder.mRows == null && mRecorder.mMediaType != TYPE_ANY && mediaType != mRecorder.mMediaType) {
+                        continue;
+                    }
+
+                    // The index keeps the file which is delivered, so there is one file per row.
+                    AlbumFile albumFile = readRawFile(mCursor, mediaType, mColumns, mStringPool);
+                    if (mRecorder.mRows != null && albumFile.getPath() != null) mRecorder.mRows.add(mLastId, albumFile);
+                    if (mRecorder.mMediaType != TYPE_ANY && mediaType != mRecorder.mMediaType) continue;
+
+                    // A filtered row is recorded too, so the watcher does not read it again until it changes.
+                    if (!applyFilters(albumFile)) {
+                        mRecorder.mVersions.add(mLastId, albumFile.getDateModified(), null);
+                        continue;
+                    }
+
+                    mRecorder.mVersions.add(mLastId, albumFile.getDateModified(), albumFile.getPath());
+                    return albumFile;
+                } else {
+                    isExhausted = mPageSize <= 0 || mPageCount < mPageSize;
+                    mCursor.close();
+                    mCursor = null;
+                }
+            }
+        }
+
+        /**
+         * The first query failed, the provider can not serve this source.
+         */
+        boolean isUnavailable() {
+            return isUnavailable;
+        }
+
+        /**
+         * A query failed, the rows after the last page read are missing.
+         */
+        boolean isFailed() {
+            return isFailed;
+        }
+
+        void close() {
+            if (mCursor != null) {
+                mCursor.close();
+                mCursor = null;
+            }
+            isExhausted = true;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import com.yanzhenjie.album.AlbumFile;
+
+import java.util.Arrays;
+
+/**
+ * <p>The rows of the index, the id of each row and its file. The files are the ones the albums show,
+ * so the index and the open album share one file per row.</p>
+ * <p>The rows are only appended to while they are built. Once they have been published a file is only replaced
+ * by a copy of it, when an album has given it a state which an earlier result may still hold.</p>
+ */
+class MediaRows {
+
+    private int mSize;
+    private long[] mIds;
+    private AlbumFile[] mAlbumFiles;
+
+    MediaRows(int capacity) {
+        capacity = Math.max(capacity, 16);
+        mIds = new long[capacity];
+        mAlbumFiles = new AlbumFile[capacity];
+    }
+
+    /**
+     * Append a row.
+     *
+     * @param albumFile the file of the row, with its date modified.
+     */
+    void add(long id, AlbumFile albumFile) {
+        if (mSize == mIds.length) {
+            mIds = Arrays.copyOf(mIds, mSize * 2);
+            mAlbumFiles = Arrays.copyOf(mAlbumFiles, mSize * 2);
+        }
+        mIds[mSize] = id;
+        mAlbumFiles[mSize] = albumFile;
+        mSize++;
+    }
+
+    /**
+     * Append a row of other rows, the file is shared.
+     */
+    void add(MediaRows rows, int row) {
+        add(rows.mIds[row], rows.mAlbumFiles[row]);
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    long getId(int row) {
+        return mIds[row];
+    }
+
+    AlbumFile getAlbumFile(int row) {
+        return mAlbumFiles[row];
+    }
+
+    /**
+     * Replace the file of a row.
+     */
+    void setAlbumFile(int row, AlbumFile albumFile) {
+        mAlbumFiles[row] = albumFile;
+    }
+
+    /**
+     * Copy the columns of a file read from the provider, without the state an album has given it.
+     */
+    static AlbumFile copyOf(AlbumFile albumFile) {
+        AlbumFile copy = new AlbumFile();
+        copy.setMediaType(albumFile.getMediaType());
+        copy.setPath(albumFile.getPath());
+        copy.setBucketName(albumFile.getBucketName());
+        copy.setMimeType(albumFile.getMimeType());
+        copy.setAddDate(albumFile.getAddDate());
+        copy.setLatitude(albumFile.getLatitude());
+        copy.setLongitude(albumFile.getLongitude());
+        copy.setSize(albumFile.getSize());
+        copy.setDateModified(albumFile.getDateModified());
+        copy.setDuration(albumFile.getDuration());
+        copy.setWidth(albumFile.getWidth());
+        copy.setHeight(albumFile.getHeight());
+        copy.setOrientation(albumFile.getOrientation());
+        return copy;
+    }
+
+    /**
+     * Compare two rows by the date added descending, then the id descending, the same order as the provider.
+     */
+    static int compareByDate(MediaRows rows1, int row1, MediaRows rows2, int row2) {
+        long date1 = rows1.mAlbumFiles[row1].getAddDate();
+        long date2 = rows2.mAlbumFiles[row2].getAddDate();
+        if (date1 != date2) return date1 > date2 ? -1 : 1;
+        long id1 = rows1.mIds[row1];
+        long id2 = rows2.mIds[row2];
+        if (id1 != id2) return id1 > id2 ? -1 : 1;
+        return 0;
+    }
+
+    /**
+     * Copy the rows sorted by the date added descending.
+     */
+    MediaRows sortByDate() {
+        int[] rows = sortRows(new RowComparator() {
+            @Override
+            public int compare(int row1, int row2) {
+                return compareByDate(MediaRows.this, row1, MediaRows.this, row2);
+            }
+        });
+        MediaRows sortedRows = new MediaRows(mSize);
+        for (int row : rows) sortedRows.add(this, row);
+        return sortedRows;
+    }
+
+    /**
+     * Get the rows sorted by the id ascending.
+     */
+    int[] sortRowsById() {
+        return sortRows(new RowComparator() {
+            @Override
+            public int compare(int row1, int row2) {
+                long id1 = mIds[row1];
+                long id2 = mIds[row2];
+                return id1 == id2 ? 0 : (id1 < id2 ? -1 : 1);
+            }
+        });
+    }
+
+    private interface RowComparator {
+        int compare(int row1, int row2);
+    }
+
+    /**
+     * Merge sort the row numbers, so no row is boxed.
+     */
+    private int[] sortRows(RowComparator comparator) {
+        int[] rows = new int[mSize];
+        for (int i = 0; i < mSize; i++) rows[i] = i;
+        int[] buffer = new int[mSize];
+        for (int width = 1; width < mSize; width *= 2) {
+            for (int start = 0; start < mSize; start += width * 2) {
+                int middle = Math.min(start + width, mSize);
+                int end = Math.min(start + width * 2, mSize);
+                int left = start, right = middle, out = start;
+                while (left < middle && right < end) {
+                    buffer[out++] = comparator.compare(rows[left], rows[right]) <= 0 ? rows[left++] : rows[right++];
+                }
+                while (left < middle) buffer[out++] = rows[left++];
+                while (right < end) buffer[out++] = rows[right++];
+            }
+            int[] sorted = buffer;
+            buffer = rows;
+            rows = sorted;
+        }
+        return rows;
+    }
+}
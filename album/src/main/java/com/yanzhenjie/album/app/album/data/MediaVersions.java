@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * <p>The ids, dates modified and paths of the rows read from the provider, with the greatest id and date modified
+ * among them. The watcher reads the rows from them on and skips the versions it has already read, and finds the
+ * removed rows by comparing the ids. A row which is filtered out is kept without a path, so it is not read again
+ * until it changes.</p>
+ */
+public class MediaVersions {
+
+    private long[] mIds = new long[16];
+    private long[] mDatesModified = new long[16];
+    private String[] mPaths = new String[16];
+    private int mSize;
+    private boolean isSorted = true;
+
+    private long mMaxId = -1;
+    private long mMaxDateModified = -1;
+
+    /**
+     * Append the version of a row read by a scan.
+     *
+     * @param path the path of the file, or null if it is filtered out.
+     */
+    void add(long id, long dateModified, @Nullable String path) {
+        if (mSize == mIds.length) grow();
+        if (mSize > 0 && id < mIds[mSize - 1]) isSorted = false;
+        mIds[mSize] = id;
+        mDatesModified[mSize] = dateModified;
+        mPaths[mSize] = path;
+        mSize++;
+        advance(id, dateModified);
+    }
+
+    /**
+     * Add or replace the version of a row.
+     *
+     * @param path the path of the file, or null if it is filtered out.
+     */
+    void put(long id, long dateModified, @Nullable String path) {
+        sort();
+        int index = Arrays.binarySearch(mIds, 0, mSize, id);
+        if (index < 0) {
+            index = -index - 1;
+            if (mSize == mIds.length) grow();
+            System.arraycopy(mIds, index, mIds, index + 1, mSize - index);
+            System.arraycopy(mDatesModified, index, mDatesModified, index + 1, mSize - index);
+            System.arraycopy(mPaths, index, mPaths, index + 1, mSize - index);
+            mIds[index] = id;
+            mSize++;
+        }
+        mDatesModified[index] = dateModified;
+        mPaths[index] = path;
+        advance(id, dateModified);
+    }
+
+    private void grow() {
+        mIds = Arrays.copyOf(mIds, mSize * 2);
+        mDatesModified = Arrays.copyOf(mDatesModified, mSize * 2);
+        mPaths = Arrays.copyOf(mPaths, mSize * 2);
+    }
+
+    private void advance(long id, long dateModified) {
+        if (id > mMaxId) mMaxId = id;
+        if (dateModified > mMaxDateModified) mMaxDateModified = dateModified;
+    }
+
+    /**
+     * Whether this version of a row has been read, the row is unchanged if it has the same date modified
+     * and the same path, or is still filtered out.
+     *
+     * @param path the path of the file, or null if it is filtered out.
+     */
+    boolean isRead(long id, long dateModified, @Nullable String path) {
+        sort();
+        int index = Arrays.binarySearch(mIds, 0, mSize, id);
+        if (index < 0 || mDatesModified[index] != dateModified) return false;
+        return path == null ? mPaths[index] == null : path.equals(mPaths[index]);
+    }
+
+    /**
+     * Get the path of a file.
+     *
+     * @return the path, or null if the row has not been read or is filtered out.
+     */
+    @Nullable
+    String getPath(long id) {
+        sort();
+        int index = Arrays.binarySearch(mIds, 0, mSize, id);
+        return index >= 0 ? mPaths[index] : null;
+    }
+
+    /**
+     * Remove the version of a row.
+     *
+     * @return the path of the file, or null if the row has not been read or is filtered out.
+     */
+    @Nullable
+    String remove(long id) {
+        sort();
+        int index = Arrays.binarySearch(mIds, 0, mSize, id);
+        if (index < 0) return null;
+
+        String path = mPaths[index];
+        System.arraycopy(mIds, index + 1, mIds, index, mSize - index - 1);
+        System.arraycopy(mDatesModified, index + 1, mDatesModified, index, mSize - index - 1);
+        System.arraycopy(mPaths, index + 1, mPaths, index, mSize - index - 1);
+        mPaths[--mSize] = null;
+        return path;
+    }
+
+    /**
+     * Remove the rows whose ids are not in the provider any more.
+     *
+     * @param ids          the ids in the provider, sorted ascending.
+     * @param removedPaths the paths of the removed files are added to it.
+     */
+    void retainAll(long[] ids, Set<String> removedPaths) {
+        sort();
+        int keepCount = 0;
+        int index = 0;
+        for (int i = 0; i < mSize; i++) {
+            long id = mIds[i];
+            while (index < ids.length && ids[index] < id) index++;
+            if (index < ids.length && ids[index] == id) {
+                mIds[keepCount] = id;
+                mDatesModified[keepCount] = mDatesModified[i];
+                mPaths[keepCount] = mPaths[i];
+                keepCount++;
+            } else if (mPaths[i] != null) {
+                removedPaths.add(mPaths[i]);
+            }
+        }
+        Arrays.fill(mPaths, keepCount, mSize, null);
+        mSize = keepCount;
+    }
+
+    /**
+     * The greatest id read, -1 if none has been read.
+     */
+    long getMaxId() {
+        return mMaxId;
+    }
+
+    /**
+     * The greatest date modified read, -1 if none has been read.
+     */
+    long getMaxDateModified() {
+        return mMaxDateModified;
+    }
+
+    /**
+     * A scan reads the rows by date, they are sorted by id once before the first lookup.
+     * Each version is placed at the position of its id, a row read twice keeps its last version.
+     */
+    private void sort() {
+        if (isSorted) return;
+
+        long[] ids = Arrays.copyOf(mIds, mIds.length);
+        Arrays.sort(ids, 0, mSize);
+        int size = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (size == 0 || ids[size - 1] != ids[i]) ids[size++] = ids[i];
+        }
+        long[] datesModified = new long[mDatesModified.length];
+        String[] paths = new String[mPaths.length];
+        for (int i = 0; i < mSize; i++) {
+            int index = Arrays.binarySearch(ids, 0, size, mIds[i]);
+            datesModified[index] = mDatesModified[i];
+            paths[index] = mPaths[i];
+        }
+        mIds = ids;
+        mDatesModified = datesModified;
+        mPaths = paths;
+        mSize = size;
+        isSorted = true;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.support.annotation.Nullable;
+
+import com.yanzhenjie.album.AlbumFile;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <p>Watches the provider while the album is open and reports the files added, changed or removed since the folders
+ * were read. A change only reads the ids of the provider and the rows from the greatest id and date modified seen.</p>
+ */
+public class MediaWatcher extends ContentObserver {
+
+    public interface Callback {
+        /**
+         * The files of the provider have changed.
+         *
+         * @param insertedFiles the files which were added.
+         * @param changedFiles  the files which were modified, each has the path of a file which was read before.
+         * @param removedPaths  the paths of the files which were removed or are filtered out now.
+         */
+        void onMediaChanged(ArrayList<AlbumFile> insertedFiles, ArrayList<AlbumFile> changedFiles, Set<String> removedPaths);
+    }
+
+    /**
+     * A scan of a folder reports every file, the changes are applied once the burst settles.
+     */
+    private static final long UPDATE_DELAY = 500;
+
+    private final ContentResolver mContentResolver;
+    private final Handler mHandler;
+    private final int mFunction;
+    private final MediaReader mMediaReader;
+    private final FolderCollector mFolderCollector;
+    private final MediaVersions mMediaVersions;
+    private final Callback mCallback;
+
+    private UpdateTask mUpdateTask;
+    private boolean isPending;
+    private boolean isRegistered;
+
+    public MediaWatcher(Context context, int function, MediaReader mediaReader, FolderCollector folderCollector,
+                        MediaVersions mediaVersions, Callback callback) {
+        this(context, new Handler(Looper.getMainLooper()), function, mediaReader, folderCollector, mediaVersions, callback);
+    }
+
+    private MediaWatcher(Context context, Handler handler, int function, MediaReader mediaReader,
+                         FolderCollector folderCollector, MediaVersions mediaVersions, Callback callback) {
+        super(handler);
+        this.mContentResolver = context.getContentResolver();
+        this.mHandler = handler;
+        this.mFunction = function;
+        this.mMediaReader = mediaReader;
+        this.mFolderCollector = folderCollector;
+        this.mMediaVersions = mediaVersions;
+        this.mCallback = callback;
+    }
+
+    /**
+     * Get the collector of the folders being watched.
+     */
+    public FolderCollector getFolderCollector() {
+        return mFolderCollector;
+    }
+
+    /**
+     * Start watching the images and videos of the provider.
+     */
+    public void register() {
+        if (isRegistered) return;
+
+        mContentResolver.registerContentObserver(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, true, this);
+        mContentResolver.registerContentObserver(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, true, this);
+        isRegistered = true;
+    }
+
+    /**
+     * Stop watching, the pending changes are dropped.
+     */
+    public void unregister() {
+        if (!isRegistered) return;
+
+        mContentResolver.unregisterContentObserver(this);
+        mHandler.removeCallbacks(mUpdateRunnable);
+        if (mUpdateTask != null) {
+            mUpdateTask.cancel(true);
+            mUpdateTask = null;
+        }
+        isPending = false;
+        isRegistered = false;
+    }
+
+    @Override
+    public void onChange(boolean selfChange) {
+        mHandler.removeCallbacks(mUpdateRunnable);
+        mHandler.postDelayed(mUpdateRunnable, UPDATE_DELAY);
+    }
+
+    private final Runnable mUpdateRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mUpdateTask != null) {
+                isPending = true;
+                return;
+            }
+
+            mUpdateTask = new UpdateTask();
+            mUpdateTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+    };
+
+    private void onUpdateFinished(ArrayList<AlbumFile> insertedFiles, ArrayList<AlbumFile> changedFiles,
+                                  Set<String> removedPaths) {
+        mUpdateTask = null;
+        if (!insertedFiles.isEmpty() || !changedFiles.isEmpty() || !removedPaths.isEmpty()) {
+            mCallback.onMediaChanged(insertedFiles, changedFiles, removedPaths);
+        }
+        if (isPending) {
+            isPending = false;
+            mUpdateRunnable.run();
+        }
+    }
+
+    /**
+     * Only one task runs at a time, so the versions are only used by the worker thread of the running task.
+     */
+    private class UpdateTask extends AsyncTask<Void, Void, Void> {
+
+        private final ArrayList<AlbumFile> mInsertedFiles = new ArrayList<>();
+        private final ArrayList<AlbumFile> mChangedFiles = new ArrayList<>();
+        private final Set<String> mRemovedPaths = new HashSet<>();
+
+        @Override
+        protected Void doInBackground(Void... params) {
+            // The removed rows are found by their ids, no other column is read for them.
+            long[] ids = mMediaReader.readIds(mFunction);
+            if (ids == null || isCancelled()) return null;
+            mMediaVersions.retainAll(ids, mRemovedPaths);
+
+            long lastId = mMediaVersions.getMaxId();
+            long lastDateModified = mMediaVersions.getMaxDateModified();
+            mMediaReader.readModified(mFunction, lastId, lastDateModified, new MediaReader.RowCallback() {
+                @Override
+                public void onRow(long id, long dateModified, String path, @Nullable AlbumFile albumFile) {
+                    // The rows of the last date modified are read again, those already read are skipped.
+                    String shownPath = albumFile == null ? null : path;
+                    if (mMediaVersions.isRead(id, dateModified, shownPath)) return;
+
+                    String loadedPath = mMediaVersions.getPath(id);
+                    mMediaVersions.put(id, dateModified, shownPath);
+                    if (albumFile == null) {
+                        // The file is filtered out, it may have been shown before it was changed.
+                        if (loadedPath != null) mRemovedPaths.add(loadedPath);
+                        return;
+                    }
+
+                    if (loadedPath == null) {
+                        mInsertedFiles.add(albumFile);
+                    } else if (loadedPath.equals(path)) {
+                        mChangedFiles.add(albumFile);
+                    } else {
+                        // The file has been moved.
+                        mRemovedPaths.add(loadedPath);
+                        mInsertedFiles.add(albumFile);
+                    }
+                }
+            });
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(Void result) {
+            onUpdateFinished(mInsertedFiles, mChangedFiles, mRemovedPaths);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import android.text.TextUtils;
 import com.yanzhenjie.album.AlbumFile;
 import com.yanzhenjie.album.Filter;
 import com.yanzhenjie.album.FilterWithReason;
+import com.yanzhenjie.album.MediaFilter;
 import com.yanzhenjie.album.util.AlbumUtils;
 
 import java.io.File;
@@ -35,11 +36,13 @@ public class PathConversion {
     private Filter<Long> mSizeFilter;
     private Filter<String> mMimeFilter;
     private FilterWithReason<Long> mDurationFilter;
+    private MediaFilter mMediaFilter;
 
-    public PathConversion(Filter<Long> sizeFilter, Filter<String> mimeFilter, FilterWithReason<Long> durationFilter) {
+    public PathConversion(Filter<Long> sizeFilter, Filter<String> mimeFilter, FilterWithReason<Long> durationFilter, MediaFilter mediaFilter) {
         this.mSizeFilter = sizeFilter;
         this.mMimeFilter = mimeFilter;
         this.mDurationFilter = durationFilter;
+        this.mMediaFilter = mediaFilter;
     }
 
     @WorkerThread
@@ -58,6 +61,7 @@ public class PathConversion {
         long nowTime = System.currentTimeMillis();
         albumFile.setAddDate(nowTime);
         albumFile.setSize(file.length());
+        albumFile.setDateModified(file.lastModified() / 1000);
         int mediaType = 0;
         if (!TextUtils.isEmpty(mimeType)) {
             if (mimeType.contains("video"))
@@ -92,6 +96,10 @@ public class PathConversion {
                 }
             }
         }
+
+        if (mMediaFilter != null && mMediaFilter.filter(albumFile)) {
+            albumFile.setDisable(true);
+        }
         return albumFile;
     }
 
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.support.annotation.Nullable;
+
+/**
+ * <p>Scan-local pool of the values which repeat across rows, such as bucket names and MIME types.
+ * A column is copied into a reused buffer and compared by its characters,
+ * so a string is only created the first time a value is seen.</p>
+ */
+class StringPool {
+
+    private final CharArrayBuffer mBuffer = new CharArrayBuffer(64);
+    private String[] mStrings = new String[64];
+    private int mCount;
+
+    /**
+     * Get the value of the column at the current position of the cursor.
+     *
+     * @return the pooled instance, or null if the column is null.
+     */
+    @Nullable
+    String get(Cursor cursor, int column) {
+        if (cursor.isNull(column)) return null;
+
+        cursor.copyStringToBuffer(column, mBuffer);
+        char[] data = mBuffer.data;
+        int length = mBuffer.sizeCopied;
+        // The same hash as String#hashCode(), which each pooled string has cached.
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + data[i];
+        }
+
+        int mask = mStrings.length - 1;
+        int index = (hash ^ (hash >>> 16)) & mask;
+        String value;
+        while ((value = mStrings[index]) != null) {
+            if (value.hashCode() == hash && matches(value, data, length)) return value;
+            index = (index + 1) & mask;
+        }
+
+        value = new String(data, 0, length);
+        mStrings[index] = value;
+        if (++mCount * 2 > mStrings.length) rehash();
+        return value;
+    }
+
+    private static boolean matches(String value, char[] data, int length) {
+        if (value.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != data[i]) return false;
+        }
+        return true;
+    }
+
+    private void rehash() {
+        String[] strings = new String[mStrings.length * 2];
+        int mask = strings.length - 1;
+        for (String value : mStrings) {
+            if (value == null) continue;
+
+            int hash = value.hashCode();
+            int index = (hash ^ (hash >>> 16)) & mask;
+            while (strings[index] != null) {
+                index = (index + 1) & mask;
+            }
+            strings[index] = value;
+        }
+        mStrings = strings;
+    }
+}
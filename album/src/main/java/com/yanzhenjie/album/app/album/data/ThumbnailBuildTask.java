@@ -17,10 +17,22 @@ package com.yanzhenjie.album.app.album.data;
 
 import android.content.Context;
 import android.os.AsyncTask;
+import android.support.annotation.Nullable;
 
 import com.yanzhenjie.album.AlbumFile;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by YanZhenjie on 2017/10/15.
@@ -41,15 +53,51 @@ public class ThumbnailBuildTask extends AsyncTask<Void, Void, ArrayList<AlbumFil
         void onThumbnailCallback(ArrayList<AlbumFile> albumFiles);
     }
 
+    private static final int THREAD_COUNT = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+    /**
+     * The time allowed for one thumbnail. The batch is given this much for each round of the threads,
+     * the files whose thumbnails are not done by then are delivered without one.
+     */
+    private static final long ITEM_TIMEOUT = 5000;
+
+    private static ExecutorService sExecutor;
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "Album Thumbnail #" + mCount.getAndIncrement());
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+        }
+        return sExecutor;
+    }
+
     private ArrayList<AlbumFile> mAlbumFiles;
     private Callback mCallback;
 
     private ThumbnailBuilder mThumbnailBuilder;
+    private ThumbnailQueue mThumbnailQueue;
 
     public ThumbnailBuildTask(Context context, ArrayList<AlbumFile> albumFiles, Callback callback) {
+        this(context, albumFiles, null, callback);
+    }
+
+    /**
+     * @param thumbnailQueue the queue which has started building some of the thumbnails, they are taken from it.
+     */
+    public ThumbnailBuildTask(Context context, ArrayList<AlbumFile> albumFiles, @Nullable ThumbnailQueue thumbnailQueue,
+                              Callback callback) {
         this.mAlbumFiles = albumFiles;
         this.mCallback = callback;
         this.mThumbnailBuilder = new ThumbnailBuilder(context);
+        this.mThumbnailQueue = thumbnailQueue;
     }
 
     @Override
@@ -59,14 +107,48 @@ public class ThumbnailBuildTask extends AsyncTask<Void, Void, ArrayList<AlbumFil
 
     @Override
     protected ArrayList<AlbumFile> doInBackground(Void... params) {
-        for (AlbumFile albumFile : mAlbumFiles) {
-            int mediaType = albumFile.getMediaType();
-            if (mediaType == AlbumFile.TYPE_IMAGE) {
-                albumFile.setThumbPath(mThumbnailBuilder.createThumbnailForImage(albumFile.getPath()));
-            } else if (mediaType == AlbumFile.TYPE_VIDEO) {
-                albumFile.setThumbPath(mThumbnailBuilder.createThumbnailForVideo(albumFile.getPath()));
+        ExecutorService executor = getExecutor();
+        // One deadline for the batch from its submission, a slow file does not shorten the wait for the others.
+        int rounds = (mAlbumFiles.size() + THREAD_COUNT - 1) / THREAD_COUNT;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ITEM_TIMEOUT * Math.max(rounds, 1));
+        List<Future<String>> futures = new ArrayList<>(mAlbumFiles.size());
+        for (final AlbumFile albumFile : mAlbumFiles) {
+            Future<String> started = mThumbnailQueue == null ? null : mThumbnailQueue.take(albumFile);
+            if (started != null) {
+                futures.add(started);
+                continue;
+            }
+            futures.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    int mediaType = albumFile.getMediaType();
+                    if (mediaType == AlbumFile.TYPE_IMAGE) {
+                        return mThumbnailBuilder.createThumbnailForImage(albumFile);
+                    } else if (mediaType == AlbumFile.TYPE_VIDEO) {
+                        return mThumbnailBuilder.createThumbnailForVideo(albumFile);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        // The thumbnails are built in parallel and collected in the order of the files.
+        for (int i = 0; i < mAlbumFiles.size(); i++) {
+            Future<String> future = futures.get(i);
+            try {
+                long timeout = Math.max(deadline - System.nanoTime(), 0);
+                mAlbumFiles.get(i).setThumbPath(future.get(timeout, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+            } catch (ExecutionException ignored) {
+            } catch (InterruptedException e) {
+                for (Future<String> pending : futures) pending.cancel(true);
+                Thread.currentThread().interrupt();
+                break;
             }
         }
+        // The retrievers still in use by cancelled thumbnails are released when they finish.
+        mThumbnailBuilder.release();
         return mAlbumFiles;
     }
 
@@ -15,40 +15,82 @@
  */
 package com.yanzhenjie.album.app.album.data;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
 import android.media.ExifInterface;
 import android.media.MediaMetadataRetriever;
+import android.os.Build;
 import android.support.annotation.Nullable;
 import android.support.annotation.WorkerThread;
 import android.text.TextUtils;
 import android.webkit.URLUtil;
 
+import com.yanzhenjie.album.Album;
+import com.yanzhenjie.album.AlbumFile;
+import com.yanzhenjie.album.ThumbnailTier;
 import com.yanzhenjie.album.util.AlbumUtils;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
+import java.util.LinkedList;
 
 /**
  * Created by YanZhenjie on 2017/10/15.
  */
 public class ThumbnailBuilder {
 
-    private static final int THUMBNAIL_SIZE = 360;
-    private static final int THUMBNAIL_QUALITY = 80;
+    /**
+     * The largest difference of the aspect ratios of an embedded thumbnail and its image,
+     * a thumbnail beyond it has been padded to another ratio.
+     */
+    private static final float ASPECT_TOLERANCE = 0.05F;
 
     private File mCacheDir;
+    private ThumbnailCache mThumbnailCache;
+    private ThumbnailPack mThumbnailPack;
+    private BitmapPool mBitmapPool;
+    private ThumbnailTier mTier;
+    private int mEmbeddedThumbnailSize;
+
+    /**
+     * The idle retrievers, a retriever is reused for the videos of a batch until {@link #release()}.
+     */
+    private final LinkedList<MediaMetadataRetriever> mRetrievers = new LinkedList<>();
+    private boolean isReleased;
 
     public ThumbnailBuilder(Context context) {
+        this(context, Album.getAlbumConfig().getResultThumbnailTier());
+    }
+
+    /**
+     * Build the thumbnails of a tier, the thumbnails of different tiers are cached apart.
+     *
+     * @param context context.
+     * @param tier    {@link ThumbnailTier}.
+     */
+    public ThumbnailBuilder(Context context, ThumbnailTier tier) {
+        this.mTier = tier;
+        this.mEmbeddedThumbnailSize = tier.getEmbeddedThumbnailSize();
         this.mCacheDir = AlbumUtils.getAlbumRootPath(context);
         if (mCacheDir.exists() && mCacheDir.isFile()) mCacheDir.delete();
         if (!mCacheDir.exists()) mCacheDir.mkdirs();
+        this.mThumbnailCache = Album.getAlbumConfig().getThumbnailCache(context);
+        this.mThumbnailPack = Album.getAlbumConfig().getThumbnailPack(context);
+        this.mBitmapPool = Album.getAlbumConfig().getBitmapPool(context);
     }
 
     /**
@@ -60,32 +102,37 @@ public class ThumbnailBuilder {
     @WorkerThread
     @Nullable
     public String createThumbnailForImage(String imagePath) {
+        return createThumbnailForImage(imagePath, 0, 0, 0);
+    }
+
+    /**
+     * Create a thumbnail for the image, the dimensions and orientation read by the provider are used,
+     * so the image is only decoded once.
+     *
+     * @param imageFile image.
+     * @return thumbnail path.
+     */
+    @WorkerThread
+    @Nullable
+    public String createThumbnailForImage(AlbumFile imageFile) {
+        return createThumbnailForImage(imageFile.getPath(), imageFile.getWidth(), imageFile.getHeight(), imageFile.getOrientation());
+    }
+
+    @Nullable
+    private String createThumbnailForImage(String imagePath, int sourceWidth, int sourceHeight, int orientation) {
         if (TextUtils.isEmpty(imagePath)) return null;
 
         File inFile = new File(imagePath);
         if (!inFile.exists()) return null;
 
-        File thumbnailFile = randomPath(imagePath);
-        if (thumbnailFile.exists()) return thumbnailFile.getAbsolutePath();
+        String thumbnailName = randomName(imagePath, inFile, mTier);
+        File cachedFile = mThumbnailCache.get(thumbnailName);
+        if (cachedFile != null) return cachedFile.getAbsolutePath();
 
-        Bitmap inBitmap = readImageFromPath(imagePath, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+        Bitmap inBitmap = readImage(imagePath, sourceWidth, sourceHeight, orientation);
         if (inBitmap == null) return null;
 
-        ByteArrayOutputStream compressStream = new ByteArrayOutputStream();
-        inBitmap.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, compressStream);
-
-        try {
-            compressStream.close();
-            thumbnailFile.createNewFile();
-
-            FileOutputStream writeStream = new FileOutputStream(thumbnailFile);
-            writeStream.write(compressStream.toByteArray());
-            writeStream.flush();
-            writeStream.close();
-            return thumbnailFile.getAbsolutePath();
-        } catch (Exception ignored) {
-            return null;
-        }
+        return writeThumbnail(inBitmap, thumbnailName);
     }
 
     /**
@@ -97,30 +144,291 @@ public class ThumbnailBuilder {
     @WorkerThread
     @Nullable
     public String createThumbnailForVideo(String videoPath) {
+        return createThumbnailForVideo(videoPath, 0, 0);
+    }
+
+    /**
+     * Create a thumbnail for the video, the dimensions read by the provider are used to scale the frame.
+     *
+     * @param videoFile video.
+     * @return thumbnail path.
+     */
+    @WorkerThread
+    @Nullable
+    public String createThumbnailForVideo(AlbumFile videoFile) {
+        return createThumbnailForVideo(videoFile.getPath(), videoFile.getWidth(), videoFile.getHeight());
+    }
+
+    @Nullable
+    private String createThumbnailForVideo(String videoPath, int sourceWidth, int sourceHeight) {
         if (TextUtils.isEmpty(videoPath)) return null;
 
-        File thumbnailFile = randomPath(videoPath);
-        if (thumbnailFile.exists()) return thumbnailFile.getAbsolutePath();
+        String thumbnailName = randomName(videoPath, new File(videoPath), mTier);
+        File cachedFile = mThumbnailCache.get(thumbnailName);
+        if (cachedFile != null) return cachedFile.getAbsolutePath();
+
+        Bitmap bitmap = readVideoFrame(videoPath, sourceWidth, sourceHeight);
+        if (bitmap == null) return null;
+
+        return writeThumbnail(bitmap, thumbnailName);
+    }
+
+    /**
+     * Compress the bitmap straight into a temp file and commit it to the cache, the bitmap is returned to the pool.
+     *
+     * @return thumbnail path.
+     */
+    @Nullable
+    private String writeThumbnail(Bitmap bitmap, String thumbnailName) {
+        File tempFile = mThumbnailCache.getTempFile(thumbnailName);
+        OutputStream writeStream = null;
+        boolean isWritten = false;
+        try {
+            writeStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+            isWritten = bitmap.compress(mTier.getFormat(), mTier.getQuality(), writeStream);
+            writeStream.close();
+            writeStream = null;
+        } catch (IOException ignored) {
+            isWritten = false;
+        } finally {
+            if (writeStream != null) {
+                try {
+                    writeStream.close();
+                } catch (IOException ignored) {
+                }
+            }
+            mBitmapPool.put(bitmap);
+        }
+
+        if (isWritten && mThumbnailCache.commit(tempFile, thumbnailName)) {
+            return mThumbnailCache.getFile(thumbnailName).getAbsolutePath();
+        }
+        tempFile.delete();
+        return null;
+    }
+
+    /**
+     * Read the thumbnail of the image or video from the thumbnail pack, it is built and packed if needed.
+     * Unlike {@link #createThumbnailForImage(String)}, no file is opened for a packed thumbnail,
+     * which suits the thumbnails which are read again and again.
+     *
+     * @param albumFile image or video.
+     * @return the encoded bytes of the thumbnail, or null if it can not be built.
+     */
+    @WorkerThread
+    @Nullable
+    public byte[] readPackedThumbnail(AlbumFile albumFile) {
+        String filePath = albumFile.getPath();
+        if (TextUtils.isEmpty(filePath)) return null;
+
+        String key = randomName(filePath, new File(filePath), mTier);
+        byte[] data = mThumbnailPack.get(key);
+        if (data != null) return data;
+
+        Bitmap bitmap = albumFile.getMediaType() == AlbumFile.TYPE_VIDEO ?
+                readVideoFrame(filePath, albumFile.getWidth(), albumFile.getHeight()) :
+                readImage(filePath, albumFile.getWidth(), albumFile.getHeight(), albumFile.getOrientation());
+        if (bitmap == null) return null;
+
+        ByteArrayOutputStream compressStream = new ByteArrayOutputStream();
+        boolean isWritten = bitmap.compress(mTier.getFormat(), mTier.getQuality(), compressStream);
+        mBitmapPool.put(bitmap);
+        // A failed encode is not packed, it would be served for good.
+        if (!isWritten || compressStream.size() == 0) return null;
+        data = compressStream.toByteArray();
+        mThumbnailPack.put(key, data);
+        return data;
+    }
+
+    /**
+     * Read the embedded thumbnail of the image if it is large enough, otherwise decode the image.
+     */
+    @Nullable
+    private Bitmap readImage(String imagePath, int sourceWidth, int sourceHeight, int orientation) {
+        if (mEmbeddedThumbnailSize > 0) {
+            Bitmap bitmap = readEmbeddedThumbnail(imagePath, mEmbeddedThumbnailSize, mTier.getSize(), mTier.getSize(),
+                    sourceWidth, sourceHeight, orientation, mTier.getConfig(), mBitmapPool);
+            if (bitmap != null) return bitmap;
+        }
+        return readImageFromPath(imagePath, mTier.getSize(), mTier.getSize(), sourceWidth, sourceHeight, orientation,
+                mTier.getConfig(), mBitmapPool);
+    }
+
+    /**
+     * Read the thumbnail which the camera embedded in the EXIF of a JPEG, it is rotated like the image.
+     *
+     * @param minSize      the shorter side of the smallest thumbnail which is used.
+     * @param sourceWidth  the width of the image, 0 if it is unknown.
+     * @param sourceHeight the height of the image, 0 if it is unknown.
+     * @param orientation  the clockwise rotation in degrees, only used with the dimensions.
+     * @param config       the config which the thumbnail is decoded with.
+     * @param bitmapPool   the pool which the bitmaps are reused from, null to allocate them.
+     * @return the thumbnail, or null if the image has no thumbnail of this size and the same aspect ratio.
+     */
+    @Nullable
+    public static Bitmap readEmbeddedThumbnail(String imagePath, int minSize, int width, int height,
+                                               int sourceWidth, int sourceHeight, int orientation,
+                                               Bitmap.Config config, @Nullable BitmapPool bitmapPool) {
+        if (!isJpeg(imagePath)) return null;
+
+        try {
+            ExifInterface exifInterface = new ExifInterface(imagePath);
+            if (!exifInterface.hasThumbnail()) return null;
+            byte[] data = exifInterface.getThumbnail();
+            if (data == null) return null;
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            if (Math.min(options.outWidth, options.outHeight) < minSize) return null;
 
+            boolean isKnown = sourceWidth > 0 && sourceHeight > 0;
+            if (!isKnown) {
+                sourceWidth = exifInterface.getAttributeInt(ExifInterface.TAG_IMAGE_WIDTH, 0);
+                sourceHeight = exifInterface.getAttributeInt(ExifInterface.TAG_IMAGE_LENGTH, 0);
+                orientation = computeDegree(exifInterface);
+            }
+            if (sourceWidth <= 0 || sourceHeight <= 0) return null;
+            // The provider may report the dimensions before or after the rotation, the shape is compared.
+            float sourceRatio = (float) Math.max(sourceWidth, sourceHeight) / Math.min(sourceWidth, sourceHeight);
+            float ratio = (float) Math.max(options.outWidth, options.outHeight) / Math.min(options.outWidth, options.outHeight);
+            if (Math.abs(ratio - sourceRatio) > sourceRatio * ASPECT_TOLERANCE) return null;
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = computeSampleSize(options.outWidth, options.outHeight, width, height);
+            options.inPreferredConfig = config;
+            if (bitmapPool != null) bitmapPool.setInBitmap(options, options.outWidth, options.outHeight, true);
+            Bitmap bitmap;
+            try {
+                bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            } catch (IllegalArgumentException e) {
+                // The pooled bitmap does not fit the decode.
+                options.inBitmap = null;
+                bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            }
+            if (bitmap == null || orientation % 360 == 0) return bitmap;
+            return rotate(bitmap, orientation, bitmapPool);
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Release the native resources of the retrievers, the builder keeps working but no longer reuses them.
+     */
+    public void release() {
+        synchronized (mRetrievers) {
+            isReleased = true;
+            for (MediaMetadataRetriever retriever : mRetrievers) {
+                retriever.release();
+            }
+            mRetrievers.clear();
+        }
+    }
+
+    private MediaMetadataRetriever obtainRetriever() {
+        synchronized (mRetrievers) {
+            if (!mRetrievers.isEmpty()) return mRetrievers.removeFirst();
+        }
+        return new MediaMetadataRetriever();
+    }
+
+    private void recycleRetriever(MediaMetadataRetriever retriever) {
+        synchronized (mRetrievers) {
+            if (!isReleased) {
+                mRetrievers.add(retriever);
+                return;
+            }
+        }
+        retriever.release();
+    }
+
+    /**
+     * Read a frame of the video, scaled so its shorter side is the size of the thumbnails.
+     *
+     * @param sourceWidth  the width of the video, 0 if it is unknown.
+     * @param sourceHeight the height of the video, 0 if it is unknown.
+     */
+    @Nullable
+    private Bitmap readVideoFrame(String videoPath, int sourceWidth, int sourceHeight) {
+        MediaMetadataRetriever retriever = obtainRetriever();
+        // A retriever which failed is not reused, its state is unknown.
+        boolean isReusable = false;
         try {
-            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
             if (URLUtil.isNetworkUrl(videoPath)) {
                 retriever.setDataSource(videoPath, new HashMap<String, String>());
             } else {
                 retriever.setDataSource(videoPath);
             }
-            Bitmap bitmap = retriever.getFrameAtTime();
-            thumbnailFile.createNewFile();
-            bitmap.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, new FileOutputStream(thumbnailFile));
-            return thumbnailFile.getAbsolutePath();
+            if (sourceWidth <= 0 || sourceHeight <= 0) {
+                sourceWidth = parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+                sourceHeight = parseInt(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+            }
+
+            Bitmap bitmap;
+            int shortSide = Math.min(sourceWidth, sourceHeight);
+            if (shortSide <= mTier.getSize()) {
+                bitmap = retriever.getFrameAtTime();
+            } else {
+                // The frame may be rotated, it is fitted into a square of its long side so either way fits.
+                int size = Math.round((float) Math.max(sourceWidth, sourceHeight) * mTier.getSize() / shortSide);
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                    bitmap = getScaledFrame(retriever, size);
+                } else {
+                    bitmap = scaleFrame(retriever.getFrameAtTime(), size);
+                }
+            }
+            isReusable = true;
+            return bitmap;
         } catch (Exception ignored) {
             return null;
+        } finally {
+            if (isReusable) recycleRetriever(retriever);
+            else retriever.release();
         }
     }
 
-    private File randomPath(String filePath) {
-        String outFilePath = AlbumUtils.getMD5ForString(filePath) + ".album";
-        return new File(mCacheDir, outFilePath);
+    @TargetApi(Build.VERSION_CODES.O_MR1)
+    private static Bitmap getScaledFrame(MediaMetadataRetriever retriever, int size) {
+        return retriever.getScaledFrameAtTime(-1, MediaMetadataRetriever.OPTION_CLOSEST_SYNC, size, size);
+    }
+
+    @Nullable
+    private Bitmap scaleFrame(@Nullable Bitmap frame, int size) {
+        if (frame == null) return null;
+
+        float scale = Math.min((float) size / frame.getWidth(), (float) size / frame.getHeight());
+        if (scale >= 1) return frame;
+        int width = Math.round(frame.getWidth() * scale);
+        int height = Math.round(frame.getHeight() * scale);
+        Bitmap bitmap = Bitmap.createScaledBitmap(frame, width, height, true);
+        if (bitmap != frame) mBitmapPool.put(frame);
+        return bitmap;
+    }
+
+    private static int parseInt(@Nullable String value) {
+        if (TextUtils.isEmpty(value)) return 0;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The name is the key of the path and the tier followed by the version of the content,
+     * a file which is edited in place gets a new thumbnail.
+     */
+    private static String randomName(String filePath, File file, ThumbnailTier tier) {
+        return AlbumUtils.getMD5ForString(filePath) + '-' + tier.getName() + ThumbnailCache.VERSION_SEPARATOR +
+                versionOf(file) + ThumbnailCache.SUFFIX;
+    }
+
+    /**
+     * The version of the content of a file, its length and last modified time.
+     */
+    private static String versionOf(File file) {
+        return Long.toHexString(file.length()) + '-' + Long.toHexString(file.lastModified());
     }
 
     /**
@@ -131,17 +439,42 @@ public class ThumbnailBuilder {
      */
     @Nullable
     public static Bitmap readImageFromPath(String imagePath, int width, int height) {
+        return readImageFromPath(imagePath, width, height, 0, 0, 0, Bitmap.Config.ARGB_8888, null);
+    }
+
+    /**
+     * Read the image with the dimensions and orientation which are already known, such as those of the provider.
+     * The bounds and the EXIF of the image are only read when the dimensions are unknown.
+     *
+     * @param sourceWidth  the width of the image, 0 if it is unknown.
+     * @param sourceHeight the height of the image, 0 if it is unknown.
+     * @param orientation  the clockwise rotation in degrees, only used with the dimensions.
+     * @param config       the config which the image is decoded with.
+     * @param bitmapPool   the pool which the bitmaps are reused from, null to allocate them.
+     * @return bitmap.
+     */
+    @Nullable
+    public static Bitmap readImageFromPath(String imagePath, int width, int height,
+                                           int sourceWidth, int sourceHeight, int orientation,
+                                           Bitmap.Config config, @Nullable BitmapPool bitmapPool) {
         File imageFile = new File(imagePath);
         if (imageFile.exists()) {
             try {
-                BufferedInputStream inputStream = new BufferedInputStream(new FileInputStream(imageFile));
+                BufferedInputStream inputStream;
                 BitmapFactory.Options options = new BitmapFactory.Options();
-                options.inJustDecodeBounds = true;
-                BitmapFactory.decodeStream(inputStream, null, options);
-                inputStream.close();
-
-                options.inJustDecodeBounds = false;
-                options.inSampleSize = computeSampleSize(options, width, height);
+                boolean isKnown = sourceWidth > 0 && sourceHeight > 0;
+                if (!isKnown) {
+                    inputStream = new BufferedInputStream(new FileInputStream(imageFile));
+                    options.inJustDecodeBounds = true;
+                    BitmapFactory.decodeStream(inputStream, null, options);
+                    inputStream.close();
+                    options.inJustDecodeBounds = false;
+                    sourceWidth = options.outWidth;
+                    sourceHeight = options.outHeight;
+                }
+                options.inSampleSize = computeSampleSize(sourceWidth, sourceHeight, width, height);
+                options.inPreferredConfig = config;
+                if (bitmapPool != null) bitmapPool.setInBitmap(options, sourceWidth, sourceHeight, isJpeg(imagePath));
 
                 Bitmap sampledBitmap = null;
                 boolean attemptSuccess = false;
@@ -149,25 +482,21 @@ public class ThumbnailBuilder {
                     inputStream = new BufferedInputStream(new FileInputStream(imageFile));
                     try {
                         sampledBitmap = BitmapFactory.decodeStream(inputStream, null, options);
-                        attemptSuccess = true;
+                        // A pooled bitmap which does not fit the decode is dropped and the decode is repeated.
+                        attemptSuccess = sampledBitmap != null || options.inBitmap == null;
+                        options.inBitmap = null;
                     } catch (Exception e) {
-                        options.inSampleSize *= 2;
+                        if (options.inBitmap != null) options.inBitmap = null;
+                        else options.inSampleSize *= 2;
                     }
                     inputStream.close();
                 }
 
-                String lowerPath = imagePath.toLowerCase();
-                if (lowerPath.endsWith(".jpg") || lowerPath.endsWith(".jpeg")) {
-                    int degrees = computeDegree(imagePath);
-                    if (degrees > 0) {
-                        Matrix matrix = new Matrix();
-                        matrix.setRotate(degrees);
-                        Bitmap newBitmap = Bitmap.createBitmap(sampledBitmap, 0, 0, sampledBitmap.getWidth(), sampledBitmap.getHeight(), matrix, true);
-                        if (newBitmap != sampledBitmap) {
-                            sampledBitmap.recycle();
-                            sampledBitmap = newBitmap;
-                        }
-                    }
+                if (sampledBitmap == null) return null;
+
+                if (!isKnown && isJpeg(imagePath)) orientation = computeDegree(imagePath);
+                if (orientation % 360 != 0) {
+                    sampledBitmap = rotate(sampledBitmap, orientation, bitmapPool);
                 }
                 return sampledBitmap;
             } catch (Exception ignored) {
@@ -176,36 +505,72 @@ public class ThumbnailBuilder {
         return null;
     }
 
-    private static int computeSampleSize(BitmapFactory.Options options, int width, int height) {
+    /**
+     * Rotate the bitmap into a pooled bitmap if there is one, the source is returned to the pool.
+     */
+    private static Bitmap rotate(Bitmap bitmap, int degrees, @Nullable BitmapPool bitmapPool) {
+        Matrix matrix = new Matrix();
+        matrix.setRotate(degrees);
+        RectF bounds = new RectF(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        matrix.mapRect(bounds);
+        matrix.postTranslate(-bounds.left, -bounds.top);
+
+        int width = Math.round(bounds.width());
+        int height = Math.round(bounds.height());
+        Bitmap.Config config = bitmap.getConfig() == null ? Bitmap.Config.ARGB_8888 : bitmap.getConfig();
+        Bitmap rotatedBitmap = bitmapPool == null ? null : bitmapPool.get(width, height, config);
+        if (rotatedBitmap == null) rotatedBitmap = Bitmap.createBitmap(width, height, config);
+        else rotatedBitmap.eraseColor(Color.TRANSPARENT);
+
+        Canvas canvas = new Canvas(rotatedBitmap);
+        canvas.drawBitmap(bitmap, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        if (bitmapPool == null) bitmap.recycle();
+        else bitmapPool.put(bitmap);
+        return rotatedBitmap;
+    }
+
+    private static boolean isJpeg(String imagePath) {
+        String lowerPath = imagePath.toLowerCase();
+        return lowerPath.endsWith(".jpg") || lowerPath.endsWith(".jpeg");
+    }
+
+    /**
+     * Compute a power of two sample size, the decoders round the other sizes down to one,
+     * so the decoded bitmap is as large as the pooled bitmap reserved for it.
+     */
+    static int computeSampleSize(int outWidth, int outHeight, int width, int height) {
         int inSampleSize = 1;
-        if (options.outWidth > width || options.outHeight > height) {
-            int widthRatio = Math.round((float) options.outWidth / (float) width);
-            int heightRatio = Math.round((float) options.outHeight / (float) height);
-            inSampleSize = Math.min(widthRatio, heightRatio);
+        if (outWidth > width || outHeight > height) {
+            int widthRatio = Math.round((float) outWidth / (float) width);
+            int heightRatio = Math.round((float) outHeight / (float) height);
+            inSampleSize = Integer.highestOneBit(Math.max(Math.min(widthRatio, heightRatio), 1));
         }
         return inSampleSize;
     }
 
     private static int computeDegree(String path) {
         try {
-            ExifInterface exifInterface = new ExifInterface(path);
-            int orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
-            switch (orientation) {
-                case ExifInterface.ORIENTATION_ROTATE_90: {
-                    return 90;
-                }
-                case ExifInterface.ORIENTATION_ROTATE_180: {
-                    return 180;
-                }
-                case ExifInterface.ORIENTATION_ROTATE_270: {
-                    return 270;
-                }
-                default: {
-                    return 0;
-                }
-            }
+            return computeDegree(new ExifInterface(path));
         } catch (Exception e) {
             return 0;
         }
     }
+
+    private static int computeDegree(ExifInterface exifInterface) {
+        int orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90: {
+                return 90;
+            }
+            case ExifInterface.ORIENTATION_ROTATE_180: {
+                return 180;
+            }
+            case ExifInterface.ORIENTATION_ROTATE_270: {
+                return 270;
+            }
+            default: {
+                return 0;
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import android.os.AsyncTask;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Disk cache of the thumbnails with a byte budget. The least recently used thumbnails are deleted
+ * in the background once the budget is exceeded. The order of use is kept in a small journal.</p>
+ */
+public class ThumbnailCache {
+
+    /**
+     * The suffix of the thumbnail files, other files in the directory are not managed.
+     */
+    static final String SUFFIX = ".album";
+    /**
+     * Separates the key of the source file from the version of its content in a file name.
+     */
+    static final char VERSION_SEPARATOR = '_';
+    /**
+     * The suffix of the thumbnails which are being written, they are never served.
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+    /**
+     * The names written by {@link ThumbnailBuilder}, the MD5 of the path, the name of the tier and the version.
+     * The names of earlier formats match no key, they are deleted once when the cache is opened.
+     */
+    private static final Pattern NAME_PATTERN =
+            Pattern.compile("[0-9a-f]{32}-\\d+q\\d+f\\d+c\\d+e\\d+_[0-9a-f]+-[0-9a-f]+\\.album");
+
+    private static final String JOURNAL_FILE = "thumbnail.journal";
+    private static final String JOURNAL_TEMP_FILE = JOURNAL_FILE + ".tmp";
+    private static final String PUT = "PUT";
+    private static final String READ = "READ";
+    private static final String REMOVE = "REMOVE";
+
+    /**
+     * The journal is rewritten when it has this many more lines than entries.
+     */
+    private static final int REDUNDANT_LINE_LIMIT = 1000;
+
+    private final File mDirectory;
+    private final long mMaxSize;
+
+    private LinkedHashMap<String, Long> mEntries;
+    private long mSize;
+    private Writer mJournalWriter;
+    private int mRedundantLineCount;
+    private boolean isTrimScheduled;
+
+    public ThumbnailCache(File directory, long maxSize) {
+        this.mDirectory = directory;
+        this.mMaxSize = maxSize;
+    }
+
+    /**
+     * Get the budget in bytes.
+     */
+    public long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Get the bytes used by the thumbnails.
+     */
+    @WorkerThread
+    public synchronized long getSize() {
+        load();
+        return mSize;
+    }
+
+    /**
+     * Get the file of a thumbnail, it may not exist.
+     *
+     * @param name the file name, ends with {@link #SUFFIX}.
+     */
+    File getFile(String name) {
+        return new File(mDirectory, name);
+    }
+
+    /**
+     * Get the file which a thumbnail is written into before it is committed, each thread has its own.
+     * The cache is opened first, so the temp files left by an earlier process are deleted before it is written.
+     *
+     * @param name the file name, ends with {@link #SUFFIX}.
+     */
+    @WorkerThread
+    synchronized File getTempFile(String name) {
+        load();
+        return new File(mDirectory, name + '.' + Thread.currentThread().getId() + TEMP_SUFFIX);
+    }
+
+    /**
+     * Move a thumbnail which has been written completely into place and record it,
+     * so a thumbnail is either served whole or not at all.
+     *
+     * @param tempFile the file from {@link #getTempFile(String)}.
+     * @param name     the file name, ends with {@link #SUFFIX}.
+     * @return true if the thumbnail was committed, otherwise the temp file is deleted.
+     */
+    @WorkerThread
+    synchronized boolean commit(File tempFile, String name) {
+        load();
+        if (!tempFile.renameTo(getFile(name))) {
+            tempFile.delete();
+            return false;
+        }
+        put(name);
+        return true;
+    }
+
+    /**
+     * Get a cached thumbnail and mark it as recently used.
+     *
+     * @param name the file name, ends with {@link #SUFFIX}.
+     * @return the thumbnail, or null if it is not cached.
+     */
+    @WorkerThread
+    @Nullable
+    synchronized File get(String name) {
+        load();
+        File file = getFile(name);
+        if (!mEntries.containsKey(name)) {
+            // Created before the journal existed, or by another version of the cache.
+            if (!file.isFile()) return null;
+            put(name);
+            return file;
+        }
+        // A thumbnail of another length was cut off after it was committed, such as by a power loss.
+        if (!file.isFile() || file.length() != mEntries.get(name)) {
+            if (file.exists()) file.delete();
+            remove(name);
+            return null;
+        }
+        appendJournal(READ, name, 0);
+        return file;
+    }
+
+    /**
+     * Record a thumbnail which has been written, the other versions of the same source file are deleted.
+     * The cache is trimmed in the background if it exceeds the budget.
+     *
+     * @param name the file name, ends with {@link #SUFFIX}.
+     */
+    @WorkerThread
+    synchronized void put(String name) {
+        load();
+        removeStale(name);
+        long length = getFile(name).length();
+        Long previous = mEntries.put(name, length);
+        if (previous != null) mSize -= previous;
+        mSize += length;
+        appendJournal(PUT, name, length);
+
+        if (mSize > mMaxSize && !isTrimScheduled) {
+            isTrimScheduled = true;
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    trim();
+                }
+            });
+        }
+    }
+
+    /**
+     * Delete the least recently used thumbnails until the cache is within the budget.
+     */
+    @WorkerThread
+    public synchronized void trim() {
+        isTrimScheduled = false;
+        load();
+
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            String name = entry.getKey();
+            File file = getFile(name);
+            if (file.exists() && !file.delete()) continue;
+
+            mSize -= entry.getValue();
+            iterator.remove();
+            appendJournal(REMOVE, name, 0);
+        }
+    }
+
+    /**
+     * Delete the thumbnails of the same source file and tier as the name which have another version.
+     */
+    private void removeStale(String name) {
+        String key = keyOf(name);
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            String staleName = entry.getKey();
+            if (staleName.equals(name) || !keyOf(staleName).equals(key)) continue;
+
+            File file = getFile(staleName);
+            if (file.exists() && !file.delete()) continue;
+
+            mSize -= entry.getValue();
+            iterator.remove();
+            appendJournal(REMOVE, staleName, 0);
+        }
+    }
+
+    private static String keyOf(String name) {
+        int end = name.indexOf(VERSION_SEPARATOR);
+        if (end < 0) end = name.endsWith(SUFFIX) ? name.length() - SUFFIX.length() : name.length();
+        return name.substring(0, end);
+    }
+
+    private void remove(String name) {
+        Long length = mEntries.remove(name);
+        if (length != null) mSize -= length;
+        appendJournal(REMOVE, name, 0);
+    }
+
+    private void load() {
+        if (mEntries != null) return;
+
+        mEntries = new LinkedHashMap<>(64, 0.75f, true);
+        mSize = 0;
+        deleteTempFiles();
+        File journalFile = new File(mDirectory, JOURNAL_FILE);
+        boolean isRead = journalFile.isFile() && readJournal(journalFile);
+        if (!isRead) adoptFiles();
+        if (removeLegacy() || !isRead) rewriteJournal();
+    }
+
+    /**
+     * Adopt the thumbnails which were written before the journal, oldest first.
+     */
+    private void adoptFiles() {
+        mEntries.clear();
+        mSize = 0;
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File o1, File o2) {
+                    long modified1 = o1.lastModified();
+                    long modified2 = o2.lastModified();
+                    return modified1 == modified2 ? 0 : (modified1 < modified2 ? -1 : 1);
+                }
+            });
+            for (File file : files) {
+                if (file.isFile() && file.getName().endsWith(SUFFIX)) mEntries.put(file.getName(), file.length());
+            }
+        }
+        for (long length : mEntries.values()) mSize += length;
+    }
+
+    /**
+     * Delete the thumbnails whose names do not match {@link #NAME_PATTERN}, no put replaces them.
+     *
+     * @return true if any has been deleted.
+     */
+    private boolean removeLegacy() {
+        boolean isRemoved = false;
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            String name = entry.getKey();
+            if (NAME_PATTERN.matcher(name).matches()) continue;
+
+            File file = getFile(name);
+            if (file.exists() && !file.delete()) continue;
+
+            mSize -= entry.getValue();
+            iterator.remove();
+            isRemoved = true;
+        }
+        return isRemoved;
+    }
+
+    /**
+     * Delete the thumbnails which were left half written by an earlier process.
+     */
+    private void deleteTempFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) return;
+
+        for (File file : files) {
+            String fileName = file.getName();
+            if (fileName.endsWith(TEMP_SUFFIX) && fileName.contains(SUFFIX + '.')) file.delete();
+        }
+    }
+
+    private boolean readJournal(File journalFile) {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(journalFile));
+            int lineCount = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineCount++;
+                String[] parts = line.split(" ");
+                if (parts.length < 2) continue;
+
+                String name = parts[1];
+                if (PUT.equals(parts[0]) && parts.length == 3) {
+                    mEntries.put(name, Long.parseLong(parts[2]));
+                } else if (READ.equals(parts[0])) {
+                    mEntries.get(name);
+                } else if (REMOVE.equals(parts[0])) {
+                    mEntries.remove(name);
+                }
+            }
+            for (long length : mEntries.values()) mSize += length;
+            mRedundantLineCount = lineCount - mEntries.size();
+            return true;
+        } catch (IOException e) {
+            return false;
+        } catch (NumberFormatException e) {
+            return false;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    private void appendJournal(String operation, String name, long length) {
+        try {
+            if (mJournalWriter == null) {
+                mJournalWriter = new BufferedWriter(new FileWriter(new File(mDirectory, JOURNAL_FILE), true));
+            }
+            mJournalWriter.write(operation);
+            mJournalWriter.write(' ');
+            mJournalWriter.write(name);
+            if (PUT.equals(operation)) {
+                mJournalWriter.write(' ');
+                mJournalWriter.write(Long.toString(length));
+            }
+            mJournalWriter.write('\n');
+            mJournalWriter.flush();
+            mRedundantLineCount++;
+        } catch (IOException e) {
+            closeQuietly(mJournalWriter);
+            mJournalWriter = null;
+        }
+        if (mRedundantLineCount >= REDUNDANT_LINE_LIMIT && mRedundantLineCount >= mEntries.size()) rewriteJournal();
+    }
+
+    /**
+     * Write one line per entry in the order of use.
+     */
+    private void rewriteJournal() {
+        closeQuietly(mJournalWriter);
+        mJournalWriter = null;
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) return;
+
+        File tempFile = new File(mDirectory, JOURNAL_TEMP_FILE);
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new FileWriter(tempFile));
+            for (Map.Entry<String, Long> entry : mEntries.entrySet()) {
+                writer.write(PUT + ' ' + entry.getKey() + ' ' + entry.getValue() + '\n');
+            }
+            writer.close();
+            writer = null;
+            if (tempFile.renameTo(new File(mDirectory, JOURNAL_FILE))) mRedundantLineCount = 0;
+            else tempFile.delete();
+        } catch (IOException e) {
+            tempFile.delete();
+        } finally {
+            closeQuietly(writer);
+        }
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
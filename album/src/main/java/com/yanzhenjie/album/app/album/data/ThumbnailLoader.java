@@ -0,0 +1,397 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.text.TextUtils;
+import android.util.LruCache;
+import android.view.ViewTreeObserver;
+import android.webkit.URLUtil;
+import android.widget.ImageView;
+
+import com.yanzhenjie.album.Album;
+import com.yanzhenjie.album.AlbumFile;
+import com.yanzhenjie.album.AlbumLoader;
+import com.yanzhenjie.album.LoadHandle;
+import com.yanzhenjie.album.LoadRequest;
+import com.yanzhenjie.album.SizedAlbumLoader;
+import com.yanzhenjie.album.ThumbnailTier;
+import com.yanzhenjie.album.util.AlbumUtils;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>The built-in {@link AlbumLoader}, used when no other loader is configured. The thumbnails are decoded
+ * in the background from the thumbnail pack, which builds them once, and the bitmaps are kept in a memory cache
+ * with a byte budget. A view only shows the last file loaded into it, an earlier load is cancelled.</p>
+ * <p>The grid tier is used for the small views, the preview tier for the large ones. A sized load is decoded
+ * for the size and usage it is given and ordered by its priority, other loads wait for the size of the view.
+ * Remote files are not loaded.</p>
+ * <p>The thumbnails can be preloaded into the memory cache before they are shown, and the decoding can be paused
+ * while the views are scrolled too fast to be seen.</p>
+ */
+public class ThumbnailLoader implements SizedAlbumLoader {
+
+    private static final int THREAD_COUNT = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final WeakHashMap<ImageView, Request> mRequests = new WeakHashMap<>();
+    private final Map<String, Request> mPreloads = new HashMap<>();
+    private final List<Request> mPausedRequests = new ArrayList<>();
+    private boolean isPaused;
+
+    private LruCache<String, Bitmap> mMemoryCache;
+    private ThreadPoolExecutor mExecutor;
+    private long mSequence;
+    private ThumbnailBuilder mGridBuilder;
+    private ThumbnailBuilder mPreviewBuilder;
+    private BitmapPool mBitmapPool;
+
+    @Override
+    public void load(ImageView imageView, AlbumFile albumFile) {
+        start(imageView, albumFile, null);
+    }
+
+    @Override
+    public void load(ImageView imageView, String url) {
+        start(imageView, url, null);
+    }
+
+    @Override
+    public LoadHandle load(ImageView imageView, AlbumFile albumFile, LoadRequest request) {
+        return start(imageView, albumFile, request);
+    }
+
+    @Override
+    public LoadHandle load(ImageView imageView, String url, LoadRequest request) {
+        return start(imageView, url, request);
+    }
+
+    private LoadHandle start(ImageView imageView, AlbumFile albumFile, @Nullable LoadRequest loadRequest) {
+        cancel(imageView);
+        if (TextUtils.isEmpty(albumFile.getPath())) {
+            imageView.setImageDrawable(null);
+            return LoadHandle.NONE;
+        }
+
+        initialize(imageView.getContext());
+        Request request = new Request(imageView, albumFile, loadRequest, mSequence++);
+        mRequests.put(imageView, request);
+        request.start();
+        return request;
+    }
+
+    private LoadHandle start(ImageView imageView, String url, @Nullable LoadRequest loadRequest) {
+        if (TextUtils.isEmpty(url) || URLUtil.isNetworkUrl(url)) {
+            cancel(imageView);
+            imageView.setImageDrawable(null);
+            return LoadHandle.NONE;
+        }
+
+        AlbumFile albumFile = new AlbumFile();
+        albumFile.setPath(url);
+        String mimeType = AlbumUtils.getMimeType(url);
+        boolean isVideo = mimeType != null && mimeType.startsWith("video");
+        albumFile.setMediaType(isVideo ? AlbumFile.TYPE_VIDEO : AlbumFile.TYPE_IMAGE);
+        return start(imageView, albumFile, loadRequest);
+    }
+
+    /**
+     * Cancel the load of the view, the view keeps what it shows.
+     *
+     * @param imageView {@link ImageView}.
+     */
+    @MainThread
+    public void cancel(ImageView imageView) {
+        Request request = mRequests.get(imageView);
+        if (request != null) request.cancel();
+    }
+
+    /**
+     * Decode a thumbnail into the memory cache without a view, so it is shown at once when it is loaded.
+     *
+     * @param context   context.
+     * @param albumFile file.
+     * @param request   the size, usage and priority of the load, the size is required.
+     * @return the handle to cancel the preload.
+     */
+    @MainThread
+    public LoadHandle preload(Context context, AlbumFile albumFile, LoadRequest request) {
+        if (TextUtils.isEmpty(albumFile.getPath()) || request.getWidth() <= 0 || request.getHeight() <= 0) {
+            return LoadHandle.NONE;
+        }
+
+        initialize(context);
+        Request preload = new Request(null, albumFile, request, mSequence++);
+        preload.begin(null, request.getWidth(), request.getHeight());
+        return preload;
+    }
+
+    /**
+     * Hold the decoding back, the loads wait until {@link #resume()}. The thumbnails in the memory cache are still shown.
+     */
+    @MainThread
+    public void pause() {
+        if (isPaused || mExecutor == null) return;
+
+        isPaused = true;
+        List<Runnable> queued = new ArrayList<>();
+        mExecutor.getQueue().drainTo(queued);
+        for (Runnable runnable : queued) {
+            mPausedRequests.add((Request) runnable);
+        }
+    }
+
+    /**
+     * Decode the loads which waited since {@link #pause()}.
+     */
+    @MainThread
+    public void resume() {
+        if (!isPaused) return;
+
+        isPaused = false;
+        for (Request request : mPausedRequests) {
+            mExecutor.execute(request);
+        }
+        mPausedRequests.clear();
+    }
+
+    /**
+     * Drop the bitmaps kept in memory, such as when the system is low on memory.
+     */
+    @MainThread
+    public void clearMemory() {
+        if (mMemoryCache != null) mMemoryCache.evictAll();
+    }
+
+    private void initialize(Context context) {
+        if (mMemoryCache != null) return;
+
+        context = context.getApplicationContext();
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long memoryClass = activityManager.getMemoryClass() * 1024L * 1024L;
+        mMemoryCache = new LruCache<String, Bitmap>((int) (memoryClass / 8)) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+
+        // The requests are ordered by their priority, see Request#compareTo(Request).
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "Album Loader #" + mCount.getAndIncrement());
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        mExecutor = executor;
+
+        mGridBuilder = new ThumbnailBuilder(context, Album.getAlbumConfig().getGridThumbnailTier());
+        mPreviewBuilder = new ThumbnailBuilder(context, Album.getAlbumConfig().getPreviewThumbnailTier());
+        mBitmapPool = Album.getAlbumConfig().getBitmapPool(context);
+    }
+
+    /**
+     * Decode the thumbnail bytes, sampled down if they are twice as large as the view.
+     */
+    @WorkerThread
+    @Nullable
+    private Bitmap decode(byte[] data, ThumbnailTier tier, int targetSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        int width = options.outWidth;
+        int height = options.outHeight;
+        if (width <= 0 || height <= 0) return null;
+
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = tier.getConfig();
+        options.inSampleSize = 1;
+        int shortSide = Math.min(width, height);
+        while (targetSize > 0 && shortSide / (options.inSampleSize * 2) >= targetSize) {
+            options.inSampleSize *= 2;
+        }
+        mBitmapPool.setInBitmap(options, width, height, "image/jpeg".equals(options.outMimeType));
+        try {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap does not fit the decode.
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+    }
+
+    private class Request implements Runnable, Comparable<Request>, LoadHandle, ViewTreeObserver.OnPreDrawListener {
+
+        private final WeakReference<ImageView> mViewReference;
+        private final AlbumFile mAlbumFile;
+        private final LoadRequest mLoadRequest;
+        private final long mSequence;
+
+        private ThumbnailTier mTier;
+        private ThumbnailBuilder mBuilder;
+        private String mKey;
+        private int mTargetSize;
+        private volatile boolean isCancelled;
+
+        private Request(ImageView imageView, AlbumFile albumFile, @Nullable LoadRequest loadRequest, long sequence) {
+            this.mViewReference = new WeakReference<>(imageView);
+            this.mAlbumFile = albumFile;
+            this.mLoadRequest = loadRequest;
+            this.mSequence = sequence;
+        }
+
+        /**
+         * Start once the size of the view is known, a sized load starts at once.
+         */
+        private void start() {
+            ImageView imageView = mViewReference.get();
+            if (imageView == null) return;
+
+            if (mLoadRequest != null && mLoadRequest.getWidth() > 0 && mLoadRequest.getHeight() > 0) {
+                begin(imageView, mLoadRequest.getWidth(), mLoadRequest.getHeight());
+            } else if (imageView.getWidth() > 0 && imageView.getHeight() > 0) {
+                begin(imageView, imageView.getWidth(), imageView.getHeight());
+            } else {
+                imageView.setImageDrawable(null);
+                imageView.getViewTreeObserver().addOnPreDrawListener(this);
+            }
+        }
+
+        @Override
+        public boolean onPreDraw() {
+            ImageView imageView = mViewReference.get();
+            if (imageView == null) return true;
+
+            imageView.getViewTreeObserver().removeOnPreDrawListener(this);
+            if (!isCancelled) begin(imageView, imageView.getWidth(), imageView.getHeight());
+            return true;
+        }
+
+        private void begin(@Nullable ImageView imageView, int width, int height) {
+            mTargetSize = Math.min(width, height);
+            ThumbnailTier gridTier = Album.getAlbumConfig().getGridThumbnailTier();
+            boolean isPreview = mLoadRequest != null && mLoadRequest.getUsage() == LoadRequest.USAGE_PREVIEW;
+            boolean isGrid = !isPreview && mTargetSize <= gridTier.getSize() * 2;
+            mTier = isGrid ? gridTier : Album.getAlbumConfig().getPreviewThumbnailTier();
+            mBuilder = isGrid ? mGridBuilder : mPreviewBuilder;
+            // The size and date modified of the provider, an edited or replaced file is not shown with its old bitmap.
+            // A file loaded by its path has neither, it is keyed by the path alone.
+            mKey = mTier.getName() + ':' + mAlbumFile.getPath() + ThumbnailCache.VERSION_SEPARATOR +
+                    mAlbumFile.getSize() + '-' + mAlbumFile.getDateModified();
+
+            Bitmap bitmap = mMemoryCache.get(mKey);
+            if (imageView == null) {
+                // A preload of a thumbnail which is cached or being preloaded has nothing to do.
+                if (bitmap != null || mPreloads.containsKey(mKey)) return;
+                mPreloads.put(mKey, this);
+            } else if (bitmap != null) {
+                mRequests.remove(imageView);
+                imageView.setImageBitmap(bitmap);
+                return;
+            } else {
+                imageView.setImageDrawable(null);
+            }
+
+            if (isPaused) {
+                mPausedRequests.add(this);
+            } else {
+                mExecutor.execute(this);
+            }
+        }
+
+        private int getPriority() {
+            return mLoadRequest == null ? LoadRequest.PRIORITY_NORMAL : mLoadRequest.getPriority();
+        }
+
+        /**
+         * The higher priority first, and of the same priority the last requested first,
+         * they are the ones on the screen.
+         */
+        @Override
+        public int compareTo(Request other) {
+            if (getPriority() != other.getPriority()) return getPriority() > other.getPriority() ? -1 : 1;
+            return mSequence > other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+
+        @Override
+        public void run() {
+            if (isCancelled) return;
+            byte[] data = mBuilder.readPackedThumbnail(mAlbumFile);
+            final Bitmap bitmap = data == null ? null : decode(data, mTier, mTargetSize);
+
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(bitmap);
+                }
+            });
+        }
+
+        @MainThread
+        private void deliver(@Nullable Bitmap bitmap) {
+            if (mPreloads.get(mKey) == this) mPreloads.remove(mKey);
+            if (bitmap == null) return;
+
+            mMemoryCache.put(mKey, bitmap);
+            ImageView imageView = mViewReference.get();
+            if (isCancelled || imageView == null || mRequests.get(imageView) != this) return;
+
+            mRequests.remove(imageView);
+            imageView.setImageBitmap(bitmap);
+        }
+
+        /**
+         * A load which a worker has picked up is still decoded into the memory cache, only the view is left alone.
+         */
+        @MainThread
+        @Override
+        public void cancel() {
+            if (isCancelled) return;
+            isCancelled = true;
+            mExecutor.remove(this);
+            mPausedRequests.remove(this);
+            if (mKey != null && mPreloads.get(mKey) == this) mPreloads.remove(mKey);
+            ImageView imageView = mViewReference.get();
+            if (imageView == null) return;
+
+            imageView.getViewTreeObserver().removeOnPreDrawListener(this);
+            if (mRequests.get(imageView) == this) mRequests.remove(imageView);
+        }
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Thumbnails packed into one append-only file. A hash index of the records is rebuilt when the pack is opened,
+ * and the thumbnails are read from a memory-mapped view of the file, so a read is one lookup without opening a file.
+ * The records appended since the file was mapped are read through the channel, the file is only mapped again
+ * once it has doubled.</p>
+ * <p>A replaced or removed thumbnail leaves a dead record, the pack is compacted when the dead records outweigh the live ones
+ * or the file exceeds the budget. The least recently used thumbnails are removed once the live ones exceed the budget,
+ * so the file stays within the budget and the dead records below the compaction threshold.</p>
+ */
+public class ThumbnailPack {
+
+    private static final int MAGIC = 0x414c4250;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+    /**
+     * The key length, the data length and the checksum of the data.
+     */
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int MAX_KEY_LENGTH = 1024;
+    private static final int REMOVED = -1;
+
+    /**
+     * A mapped buffer is indexed by int, the file never grows beyond it.
+     */
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * Dead records below this size are never compacted.
+     */
+    private static final long COMPACT_THRESHOLD = 1024 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static class Record {
+        private final long mOffset;
+        private final int mLength;
+        private final int mChecksum;
+
+        private Record(long offset, int length, int checksum) {
+            this.mOffset = offset;
+            this.mLength = length;
+            this.mChecksum = checksum;
+        }
+
+        private long getSize(int keyLength) {
+            return RECORD_HEADER_SIZE + keyLength + mLength;
+        }
+    }
+
+    private final File mPackFile;
+    private final long mMaxSize;
+
+    private RandomAccessFile mFile;
+    private FileChannel mChannel;
+    private MappedByteBuffer mMapped;
+    private long mFileSize;
+
+    /**
+     * Records from the least recently used, a pack which is opened starts in the order they were written.
+     */
+    private final LinkedHashMap<String, Record> mRecords = new LinkedHashMap<>(16, 0.75F, true);
+    private long mLiveSize;
+    private boolean isBroken;
+
+    public ThumbnailPack(File packFile, long maxSize) {
+        this.mPackFile = packFile;
+        // The dead records may take as much as the live ones before the pack is compacted.
+        this.mMaxSize = Math.min(maxSize, MAX_FILE_SIZE / 2);
+    }
+
+    /**
+     * Get the bytes of a thumbnail.
+     *
+     * @param key the key of the thumbnail.
+     * @return the bytes, or null if the pack has no such thumbnail.
+     */
+    @WorkerThread
+    @Nullable
+    public synchronized byte[] get(String key) {
+        if (!open()) return null;
+
+        Record record = mRecords.get(key);
+        if (record == null) return null;
+        try {
+            long mappedSize = mMapped.capacity();
+            if (record.mOffset + record.mLength > mappedSize && mFileSize >= mappedSize * 2) map();
+
+            byte[] data = new byte[record.mLength];
+            if (record.mOffset + record.mLength <= mMapped.capacity()) {
+                ByteBuffer buffer = mMapped.duplicate();
+                buffer.position((int) record.mOffset);
+                buffer.get(data);
+            } else {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                long position = record.mOffset;
+                while (buffer.hasRemaining()) {
+                    int count = mChannel.read(buffer, position);
+                    if (count < 0) throw new IOException("The record is beyond the end of the pack.");
+                    position += count;
+                }
+            }
+            return data;
+        } catch (IOException e) {
+            close();
+            return null;
+        }
+    }
+
+    /**
+     * Append a thumbnail, it replaces the one of the same key.
+     *
+     * @param key  the key of the thumbnail.
+     * @param data the bytes of the thumbnail.
+     */
+    @WorkerThread
+    public synchronized void put(String key, byte[] data) {
+        if (!open()) return;
+
+        byte[] keyBytes = key.getBytes(UTF_8);
+        if (keyBytes.length == 0 || keyBytes.length > MAX_KEY_LENGTH) return;
+        long recordSize = RECORD_HEADER_SIZE + keyBytes.length + (long) data.length;
+        if (recordSize > mMaxSize) return;
+        try {
+            if (mFileSize + recordSize > MAX_FILE_SIZE) compact();
+            if (mFileSize + recordSize > MAX_FILE_SIZE) return;
+
+            int checksum = checksum(data, 0, data.length);
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.length + data.length);
+            buffer.putInt(keyBytes.length).put(keyBytes).putInt(data.length).putInt(checksum).put(data);
+            buffer.flip();
+            long offset = append(buffer);
+
+            Record previous = mRecords.remove(key);
+            if (previous != null) mLiveSize -= previous.getSize(keyBytes.length);
+            Record record = new Record(offset + RECORD_HEADER_SIZE + keyBytes.length, data.length, checksum);
+            mRecords.put(key, record);
+            mLiveSize += record.getSize(keyBytes.length);
+
+            evict();
+            long deadSize = getDeadSize();
+            if (deadSize > COMPACT_THRESHOLD && (deadSize > mLiveSize || mFileSize > mMaxSize)) compact();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * Remove a thumbnail.
+     *
+     * @param key the key of the thumbnail.
+     */
+    @WorkerThread
+    public synchronized void remove(String key) {
+        if (!open()) return;
+
+        try {
+            removeRecord(key);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * Get the bytes of the live thumbnails.
+     */
+    @WorkerThread
+    public synchronized long getSize() {
+        return open() ? mLiveSize : 0;
+    }
+
+    private long getDeadSize() {
+        return mFileSize - HEADER_SIZE - mLiveSize;
+    }
+
+    private void removeRecord(String key) throws IOException {
+        Record record = mRecords.remove(key);
+        if (record == null) return;
+
+        byte[] keyBytes = key.getBytes(UTF_8);
+        mLiveSize -= record.getSize(keyBytes.length);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + keyBytes.length);
+        buffer.putInt(keyBytes.length).put(keyBytes).putInt(REMOVED);
+        buffer.flip();
+        append(buffer);
+    }
+
+    /**
+     * Remove the least recently used thumbnails until the live ones are within the budget.
+     */
+    private void evict() throws IOException {
+        while (mLiveSize > mMaxSize && !mRecords.isEmpty()) {
+            removeRecord(mRecords.keySet().iterator().next());
+        }
+    }
+
+    private long append(ByteBuffer buffer) throws IOException {
+        long offset = mFileSize;
+        mChannel.position(offset);
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+        mFileSize = offset + buffer.limit();
+        return offset;
+    }
+
+    private boolean open() {
+        if (mChannel != null) return true;
+        if (isBroken) return false;
+
+        try {
+            File directory = mPackFile.getParentFile();
+            if (!directory.exists()) directory.mkdirs();
+            mFile = new RandomAccessFile(mPackFile, "rw");
+            mChannel = mFile.getChannel();
+            mFileSize = mChannel.size();
+            if (mFileSize < HEADER_SIZE || mFileSize > MAX_FILE_SIZE || !readRecords()) {
+                reset();
+            }
+            return true;
+        } catch (IOException e) {
+            close();
+            // Do not retry a pack which can not be opened in this process.
+            isBroken = true;
+            return false;
+        }
+    }
+
+    /**
+     * Map the whole file. The previous mapping is released by the garbage collector, the file is only mapped
+     * again once it has doubled, so few mappings are left behind.
+     */
+    private void map() throws IOException {
+        mMapped = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, mFileSize);
+    }
+
+    /**
+     * Rebuild the index from the records. The appends are not forced to the disk, so a crash may leave a record
+     * whose length was written before its data. The pack is truncated at the first record which is cut off
+     * or whose data does not match its checksum.
+     *
+     * @return false if the file is not a pack.
+     */
+    private boolean readRecords() throws IOException {
+        map();
+        ByteBuffer buffer = mMapped.duplicate();
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return false;
+
+        mRecords.clear();
+        mLiveSize = 0;
+        byte[] keyBytes = new byte[MAX_KEY_LENGTH];
+        byte[] data = new byte[0];
+        while (buffer.remaining() >= 4) {
+            int start = buffer.position();
+            int keyLength = buffer.getInt();
+            if (keyLength <= 0 || keyLength > MAX_KEY_LENGTH || buffer.remaining() < keyLength + 4) {
+                buffer.position(start);
+                break;
+            }
+            buffer.get(keyBytes, 0, keyLength);
+            String key = new String(keyBytes, 0, keyLength, UTF_8);
+            int length = buffer.getInt();
+            if (length < REMOVED || (length != REMOVED && length > buffer.remaining() - 4)) {
+                buffer.position(start);
+                break;
+            }
+
+            Record record = null;
+            if (length != REMOVED) {
+                int checksum = buffer.getInt();
+                if (data.length < length) data = new byte[length];
+                buffer.get(data, 0, length);
+                if (checksum(data, 0, length) != checksum) {
+                    buffer.position(start);
+                    break;
+                }
+                record = new Record(buffer.position() - length, length, checksum);
+            }
+
+            Record previous = mRecords.remove(key);
+            if (previous != null) mLiveSize -= previous.getSize(keyLength);
+            if (record != null) {
+                mRecords.put(key, record);
+                mLiveSize += record.getSize(keyLength);
+            }
+        }
+
+        if (buffer.position() < mFileSize) {
+            mFileSize = buffer.position();
+            mChannel.truncate(mFileSize);
+            map();
+        }
+        return true;
+    }
+
+    private void reset() throws IOException {
+        mChannel.truncate(0);
+        mFileSize = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        append(header);
+        mRecords.clear();
+        mLiveSize = 0;
+        map();
+    }
+
+    /**
+     * Copy the live records into a new pack and replace the old one with it.
+     */
+    private void compact() throws IOException {
+        File tempFile = new File(mPackFile.getPath() + ".tmp");
+        RandomAccessFile tempRandomFile = new RandomAccessFile(tempFile, "rw");
+        LinkedHashMap<String, Record> records = new LinkedHashMap<>();
+        try {
+            FileChannel tempChannel = tempRandomFile.getChannel();
+            tempChannel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            long position = writeFully(tempChannel, header, 0);
+
+            if (mMapped.capacity() < mFileSize) map();
+            for (Map.Entry<String, Record> entry : mRecords.entrySet()) {
+                byte[] keyBytes = entry.getKey().getBytes(UTF_8);
+                Record record = entry.getValue();
+                ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.length);
+                recordHeader.putInt(keyBytes.length).put(keyBytes).putInt(record.mLength).putInt(record.mChecksum);
+                recordHeader.flip();
+                position = writeFully(tempChannel, recordHeader, position);
+
+                ByteBuffer data = mMapped.duplicate();
+                data.position((int) record.mOffset);
+                data.limit((int) (record.mOffset + record.mLength));
+                records.put(entry.getKey(), new Record(position, record.mLength, record.mChecksum));
+                position = writeFully(tempChannel, data, position);
+            }
+            tempChannel.force(false);
+        } finally {
+            tempRandomFile.close();
+        }
+
+        long liveSize = mLiveSize;
+        close();
+        if (!tempFile.renameTo(mPackFile)) {
+            tempFile.delete();
+            throw new IOException("The compacted pack can not replace the old one.");
+        }
+        mFile = new RandomAccessFile(mPackFile, "rw");
+        mChannel = mFile.getChannel();
+        mFileSize = mChannel.size();
+        mRecords.putAll(records);
+        mLiveSize = liveSize;
+        map();
+    }
+
+    private static int checksum(byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+
+    private void close() {
+        if (mFile != null) {
+            try {
+                mFile.close();
+            } catch (IOException ignored) {
+            }
+        }
+        mFile = null;
+        mChannel = null;
+        mMapped = null;
+        mRecords.clear();
+        mLiveSize = 0;
+        mFileSize = 0;
+    }
+}
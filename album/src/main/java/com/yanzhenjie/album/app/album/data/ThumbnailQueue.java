@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import android.content.Context;
+import android.os.Process;
+import android.support.annotation.Nullable;
+
+import com.yanzhenjie.album.AlbumFile;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Builds the thumbnails of the files as soon as they are checked, one at a time on a background thread,
+ * so the results are mostly built when the selection is completed. A file which is unchecked is dropped from the queue.</p>
+ */
+public class ThumbnailQueue {
+
+    private static class Job extends FutureTask<String> {
+
+        private volatile boolean isStarted;
+
+        private Job(Callable<String> callable) {
+            super(callable);
+        }
+
+        @Override
+        public void run() {
+            isStarted = true;
+            super.run();
+        }
+    }
+
+    private final ThumbnailBuilder mThumbnailBuilder;
+    private final ExecutorService mExecutor;
+    private final Map<String, Job> mJobs = new HashMap<>();
+
+    public ThumbnailQueue(Context context) {
+        this.mThumbnailBuilder = new ThumbnailBuilder(context);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                        r.run();
+                    }
+                }, "Album Thumbnail Queue");
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.mExecutor = executor;
+    }
+
+    /**
+     * Build the thumbnail of a checked file in the background.
+     *
+     * @param albumFile file.
+     */
+    public synchronized void enqueue(final AlbumFile albumFile) {
+        String path = albumFile.getPath();
+        if (path == null || mExecutor.isShutdown()) return;
+
+        Job job = mJobs.get(path);
+        if (job != null && !job.isCancelled()) return;
+
+        job = new Job(new Callable<String>() {
+            @Override
+            public String call() {
+                int mediaType = albumFile.getMediaType();
+                if (mediaType == AlbumFile.TYPE_IMAGE) {
+                    return mThumbnailBuilder.createThumbnailForImage(albumFile);
+                } else if (mediaType == AlbumFile.TYPE_VIDEO) {
+                    return mThumbnailBuilder.createThumbnailForVideo(albumFile);
+                }
+                return null;
+            }
+        });
+        mJobs.put(path, job);
+        mExecutor.execute(job);
+    }
+
+    /**
+     * Drop the thumbnail of an unchecked file if it has not been started.
+     *
+     * @param albumFile file.
+     */
+    public synchronized void cancel(AlbumFile albumFile) {
+        Job job = mJobs.remove(albumFile.getPath());
+        if (job != null && !job.isStarted) job.cancel(false);
+    }
+
+    /**
+     * Take the thumbnail of a file which has been started or built. A thumbnail which is still waiting
+     * in the queue is cancelled, so the caller builds it without waiting for the files ahead of it.
+     *
+     * @param albumFile file.
+     * @return the started or built thumbnail, or null if the caller has to build it.
+     */
+    @Nullable
+    public synchronized Future<String> take(AlbumFile albumFile) {
+        Job job = mJobs.remove(albumFile.getPath());
+        if (job == null) return null;
+        if (job.isStarted && !job.isCancelled()) return job;
+
+        job.cancel(false);
+        return null;
+    }
+
+    /**
+     * Cancel the thumbnails which have not been started and release the builder.
+     */
+    public synchronized void release() {
+        mJobs.clear();
+        mExecutor.shutdownNow();
+        mThumbnailBuilder.release();
+    }
+}
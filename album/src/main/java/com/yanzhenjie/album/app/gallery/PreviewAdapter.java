@@ -18,10 +18,12 @@ package com.yanzhenjie.album.app.gallery;
 import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.v4.view.PagerAdapter;
+import android.util.DisplayMetrics;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 
+import com.yanzhenjie.album.LoadRequest;
 import com.yanzhenjie.album.impl.OnItemClickListener;
 
 import java.util.List;
@@ -35,6 +37,7 @@ public abstract class PreviewAdapter<T> extends PagerAdapter
 
     private Context mContext;
     private List<T> mPreviewList;
+    private LoadRequest mLoadRequest;
 
     private OnItemClickListener mItemClickListener;
     private OnItemClickListener mItemLongClickListener;
@@ -42,6 +45,19 @@ public abstract class PreviewAdapter<T> extends PagerAdapter
     public PreviewAdapter(Context context, List<T> previewList) {
         this.mContext = context;
         this.mPreviewList = previewList;
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        this.mLoadRequest = LoadRequest.newBuilder()
+                .size(metrics.widthPixels, metrics.heightPixels)
+                .usage(LoadRequest.USAGE_PREVIEW)
+                .priority(LoadRequest.PRIORITY_HIGH)
+                .build();
+    }
+
+    /**
+     * Get the request of a page, it is as large as the screen.
+     */
+    protected LoadRequest getLoadRequest() {
+        return mLoadRequest;
     }
 
     /**
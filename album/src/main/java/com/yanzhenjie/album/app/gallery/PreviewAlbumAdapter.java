@@ -18,7 +18,6 @@ package com.yanzhenjie.album.app.gallery;
 import android.content.Context;
 import android.widget.ImageView;
 
-import com.yanzhenjie.album.Album;
 import com.yanzhenjie.album.AlbumFile;
 
 import java.util.ArrayList;
@@ -35,6 +34,6 @@ public class PreviewAlbumAdapter extends PreviewAdapter<AlbumFile> {
 
     @Override
     protected void loadPreview(ImageView imageView, AlbumFile item, int position) {
-        Album.getAlbumConfig().getAlbumLoader().load(imageView, item);
+        getLoadRequest().load(imageView, item);
     }
 }
\ No newline at end of file
@@ -18,8 +18,6 @@ package com.yanzhenjie.album.app.gallery;
 import android.content.Context;
 import android.widget.ImageView;
 
-import com.yanzhenjie.album.Album;
-
 import java.util.List;
 
 /**
@@ -34,6 +32,6 @@ public class PreviewPathAdapter extends PreviewAdapter<String> {
 
     @Override
     protected void loadPreview(ImageView imageView, String item, int position) {
-        Album.getAlbumConfig().getAlbumLoader().load(imageView, item);
+        getLoadRequest().load(imageView, item);
     }
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import android.provider.MediaStore;
+
+import com.yanzhenjie.album.AlbumFile;
+import com.yanzhenjie.album.MediaFilter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * <p>The selection compiled from a {@link MediaFilter} keeps the same rows as {@link MediaFilter#filter(AlbumFile)},
+ * checked against the rows of an in-memory SQLite table with the columns of the provider.</p>
+ */
+public class FilterSelectionTest {
+
+    private static final Long[] SIZES = {null, 0L, 100L, 5000L, 10000000L};
+    private static final String[] MIME_TYPES = {null, "image/jpeg", "image/gif", "video/mp4"};
+    private static final Long[] DURATIONS = {null, 0L, 500L, 5000L, 100000L};
+    private static final int[] MEDIA_TYPES = {
+            MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE, MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO
+    };
+
+    private Connection mConnection;
+    private final List<AlbumFile> mFiles = new ArrayList<>();
+
+    @Before
+    public void setUp() throws SQLException {
+        mConnection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement statement = mConnection.createStatement();
+        statement.execute("CREATE TABLE files (" + MediaStore.MediaColumns._ID + " INTEGER PRIMARY KEY, " +
+                MediaStore.MediaColumns.SIZE + " INTEGER, " + MediaStore.MediaColumns.MIME_TYPE + " TEXT, " +
+                MediaStore.Video.Media.DURATION + " INTEGER, " + MediaStore.Files.FileColumns.MEDIA_TYPE + " INTEGER)");
+        statement.close();
+
+        PreparedStatement insert = mConnection.prepareStatement("INSERT INTO files VALUES (?, ?, ?, ?, ?)");
+        for (Long size : SIZES) {
+            for (String mimeType : MIME_TYPES) {
+                for (Long duration : DURATIONS) {
+                    for (int mediaType : MEDIA_TYPES) {
+                        int id = mFiles.size();
+                        insert.setInt(1, id);
+                        insert.setObject(2, size);
+                        insert.setString(3, mimeType);
+                        insert.setObject(4, duration);
+                        insert.setInt(5, mediaType);
+                        insert.executeUpdate();
+
+                        // A null column is read from the cursor as 0.
+                        AlbumFile albumFile = new AlbumFile();
+                        albumFile.setSize(size == null ? 0 : size);
+                        albumFile.setMimeType(mimeType);
+                        albumFile.setDuration(duration == null ? 0 : duration);
+                        boolean isVideo = mediaType == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO;
+                        albumFile.setMediaType(isVideo ? AlbumFile.TYPE_VIDEO : AlbumFile.TYPE_IMAGE);
+                        mFiles.add(albumFile);
+                    }
+                }
+            }
+        }
+        insert.close();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        mConnection.close();
+    }
+
+    @Test
+    public void emptyFilterHasNoSelection() {
+        List<String> selectionArgs = new ArrayList<>();
+        assertNull(MediaReader.buildFilterSelection(MediaFilter.newBuilder().build(), MediaReader.TYPE_ANY, selectionArgs));
+        assertEquals(0, selectionArgs.size());
+    }
+
+    @Test
+    public void sizeRange() throws SQLException {
+        assertSameRows(MediaFilter.newBuilder().sizeRange(100, 5000).build());
+        assertSameRows(MediaFilter.newBuilder().sizeRange(1, Long.MAX_VALUE).build());
+        assertSameRows(MediaFilter.newBuilder().sizeRange(0, 100).build());
+    }
+
+    @Test
+    public void mimeTypes() throws SQLException {
+        assertSameRows(MediaFilter.newBuilder().allowMimeTypes("image/jpeg", "video/mp4").build());
+        assertSameRows(MediaFilter.newBuilder().denyMimeTypes("image/gif").build());
+        assertSameRows(MediaFilter.newBuilder().allowMimeTypes("image/jpeg", "image/gif").denyMimeTypes("image/gif").build());
+    }
+
+    @Test
+    public void durationRange() throws SQLException {
+        assertSameRows(MediaFilter.newBuilder().durationRange(500, 5000).build());
+        assertSameRows(MediaFilter.newBuilder().durationRange(1, Long.MAX_VALUE).build());
+        assertSameRows(MediaFilter.newBuilder().durationRange(0, 500).build());
+    }
+
+    @Test
+    public void combined() throws SQLException {
+        assertSameRows(MediaFilter.newBuilder()
+                .sizeRange(100, 10000000)
+                .denyMimeTypes("image/gif")
+                .durationRange(500, 100000)
+                .build());
+    }
+
+    /**
+     * Compare the rows of each media type with the files the filter keeps.
+     */
+    private void assertSameRows(MediaFilter filter) throws SQLException {
+        assertSameRows(filter, MediaReader.TYPE_ANY, null);
+        assertSameRows(filter, AlbumFile.TYPE_IMAGE, MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE);
+        assertSameRows(filter, AlbumFile.TYPE_VIDEO, MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO);
+    }
+
+    private void assertSameRows(MediaFilter filter, int mediaType, Integer tableMediaType) throws SQLException {
+        List<String> selectionArgs = new ArrayList<>();
+        String selection = MediaReader.buildFilterSelection(filter, mediaType, selectionArgs);
+
+        Set<Integer> expected = new TreeSet<>();
+        for (int id = 0; id < mFiles.size(); id++) {
+            AlbumFile albumFile = mFiles.get(id);
+            boolean isVideo = albumFile.getMediaType() == AlbumFile.TYPE_VIDEO;
+            if (tableMediaType != null && isVideo != (tableMediaType == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO)) {
+                continue;
+            }
+            if (!filter.filter(albumFile)) expected.add(id);
+        }
+
+        List<String> clauses = new ArrayList<>();
+        if (tableMediaType != null) clauses.add(MediaStore.Files.FileColumns.MEDIA_TYPE + "=" + tableMediaType);
+        if (selection != null) clauses.add("(" + selection + ")");
+        StringBuilder sql = new StringBuilder("SELECT " + MediaStore.MediaColumns._ID + " FROM files");
+        for (int i = 0; i < clauses.size(); i++) sql.append(i == 0 ? " WHERE " : " AND ").append(clauses.get(i));
+
+        Set<Integer> actual = new TreeSet<>();
+        PreparedStatement query = mConnection.prepareStatement(sql.toString());
+        for (int i = 0; i < selectionArgs.size(); i++) query.setString(i + 1, selectionArgs.get(i));
+        ResultSet resultSet = query.executeQuery();
+        while (resultSet.next()) actual.add(resultSet.getInt(1));
+        resultSet.close();
+        query.close();
+
+        assertEquals(selection, expected, actual);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>The versions which the watcher compares with the provider, see {@link MediaVersions}.</p>
+ */
+public class MediaVersionsTest {
+
+    @Test
+    public void scanOrderIsSortedOnLookup() {
+        MediaVersions versions = new MediaVersions();
+        versions.add(30, 300, "/c");
+        versions.add(10, 500, "/a");
+        versions.add(20, 100, "/b");
+
+        assertEquals("/a", versions.getPath(10));
+        assertEquals("/b", versions.getPath(20));
+        assertEquals("/c", versions.getPath(30));
+        assertNull(versions.getPath(15));
+        assertEquals(30, versions.getMaxId());
+        assertEquals(500, versions.getMaxDateModified());
+    }
+
+    @Test
+    public void rowReadTwiceKeepsLastPath() {
+        MediaVersions versions = new MediaVersions();
+        versions.add(20, 100, "/old");
+        versions.add(10, 100, "/a");
+        versions.add(20, 200, "/new");
+
+        assertEquals("/new", versions.getPath(20));
+        assertEquals("/a", versions.getPath(10));
+    }
+
+    @Test
+    public void putAndRemove() {
+        MediaVersions versions = new MediaVersions();
+        for (int i = 0; i < 40; i++) {
+            versions.add(i * 2, i, "/" + i * 2);
+        }
+        versions.put(7, 1000, "/7");
+        versions.put(8, 1001, "/eight");
+
+        assertEquals("/7", versions.getPath(7));
+        assertEquals("/eight", versions.getPath(8));
+        assertEquals(78, versions.getMaxId());
+        assertEquals(1001, versions.getMaxDateModified());
+
+        assertEquals("/7", versions.remove(7));
+        assertNull(versions.getPath(7));
+        assertNull(versions.remove(7));
+        assertEquals("/6", versions.getPath(6));
+        assertEquals("/eight", versions.getPath(8));
+    }
+
+    @Test
+    public void retainAllReportsRemovedPaths() {
+        MediaVersions versions = new MediaVersions();
+        versions.add(5, 1, "/5");
+        versions.add(3, 1, "/3");
+        versions.add(9, 1, "/9");
+        versions.add(1, 1, "/1");
+
+        Set<String> removedPaths = new HashSet<>();
+        versions.retainAll(new long[]{1, 2, 5, 10}, removedPaths);
+
+        assertEquals(2, removedPaths.size());
+        assertTrue(removedPaths.contains("/3"));
+        assertTrue(removedPaths.contains("/9"));
+        assertEquals("/1", versions.getPath(1));
+        assertEquals("/5", versions.getPath(5));
+        assertNull(versions.getPath(3));
+        assertNull(versions.getPath(9));
+        // The watermarks are not moved back, a removed row is not read again.
+        assertEquals(9, versions.getMaxId());
+    }
+
+    @Test
+    public void watermarksMoveOnlyForward() {
+        MediaVersions versions = new MediaVersions();
+        assertEquals(-1, versions.getMaxId());
+        assertEquals(-1, versions.getMaxDateModified());
+
+        versions.put(10, 100, "/10");
+        versions.put(5, 200, "/5");
+        versions.put(7, 50, "/7");
+        assertEquals(10, versions.getMaxId());
+        assertEquals(200, versions.getMaxDateModified());
+    }
+
+    @Test
+    public void readVersionIsSkipped() {
+        MediaVersions versions = new MediaVersions();
+        versions.add(20, 100, "/b");
+        versions.add(10, 100, "/a");
+
+        assertTrue(versions.isRead(10, 100, "/a"));
+        assertTrue(versions.isRead(20, 100, "/b"));
+        assertFalse(versions.isRead(10, 101, "/a"));
+        assertFalse(versions.isRead(10, 100, "/moved"));
+        assertFalse(versions.isRead(10, 100, null));
+        assertFalse(versions.isRead(30, 100, "/c"));
+
+        versions.put(10, 101, "/a");
+        assertTrue(versions.isRead(10, 101, "/a"));
+        assertFalse(versions.isRead(10, 100, "/a"));
+    }
+
+    @Test
+    public void filteredRowIsKeptWithoutPath() {
+        MediaVersions versions = new MediaVersions();
+        versions.add(3, 300, null);
+        versions.add(1, 100, "/1");
+
+        assertTrue(versions.isRead(3, 300, null));
+        assertFalse(versions.isRead(3, 300, "/3"));
+        assertNull(versions.getPath(3));
+        assertEquals(3, versions.getMaxId());
+        assertEquals(300, versions.getMaxDateModified());
+
+        // A filtered row which is removed has no path to report.
+        Set<String> removedPaths = new HashSet<>();
+        versions.retainAll(new long[]{2}, removedPaths);
+        assertEquals(1, removedPaths.size());
+        assertTrue(removedPaths.contains("/1"));
+    }
+}
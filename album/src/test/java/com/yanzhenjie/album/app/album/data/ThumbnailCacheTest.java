@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>The journal of {@link ThumbnailCache}, how it is recovered when the cache is opened again.</p>
+ */
+public class ThumbnailCacheTest {
+
+    private static final String KEY_A = "0123456789abcdef0123456789abcdef-180q75f2c3e90";
+    private static final String KEY_B = "fedcba9876543210fedcba9876543210-180q75f2c3e90";
+    private static final String KEY_C = "00000000000000000000000000000000-720q85f0c1e0";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = mFolder.newFolder("cache");
+    }
+
+    @Test
+    public void journalKeepsEntriesAcrossOpens() throws IOException {
+        ThumbnailCache cache = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        String nameA = name(KEY_A, 1);
+        String nameB = name(KEY_B, 1);
+        write(cache, nameA, 100);
+        write(cache, nameB, 50);
+
+        ThumbnailCache reopened = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        assertEquals(150, reopened.getSize());
+        assertNotNull(reopened.get(nameA));
+        assertNotNull(reopened.get(nameB));
+    }
+
+    @Test
+    public void truncatedThumbnailIsDropped() throws IOException {
+        ThumbnailCache cache = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        String name = name(KEY_A, 1);
+        write(cache, name, 100);
+
+        RandomAccessFile file = new RandomAccessFile(cache.getFile(name), "rw");
+        file.setLength(40);
+        file.close();
+
+        ThumbnailCache reopened = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        assertNull(reopened.get(name));
+        assertFalse(reopened.getFile(name).exists());
+        assertEquals(0, reopened.getSize());
+    }
+
+    @Test
+    public void newVersionRemovesOldVersion() throws IOException {
+        ThumbnailCache cache = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        String oldName = name(KEY_A, 1);
+        String newName = name(KEY_A, 2);
+        String otherTier = name(KEY_A.substring(0, 33) + "720q85f0c1e0", 1);
+        write(cache, oldName, 100);
+        write(cache, otherTier, 30);
+        write(cache, newName, 60);
+
+        assertFalse(cache.getFile(oldName).exists());
+        assertTrue(cache.getFile(newName).exists());
+        assertTrue(cache.getFile(otherTier).exists());
+        assertEquals(90, cache.getSize());
+
+        ThumbnailCache reopened = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        assertEquals(90, reopened.getSize());
+        assertNull(reopened.get(oldName));
+    }
+
+    @Test
+    public void trimRemovesLeastRecentlyUsed() throws IOException {
+        ThumbnailCache cache = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        String nameA = name(KEY_A, 1);
+        String nameB = name(KEY_B, 1);
+        String nameC = name(KEY_C, 1);
+        write(cache, nameA, 100);
+        write(cache, nameB, 100);
+        write(cache, nameC, 100);
+        assertNotNull(cache.get(nameA));
+
+        ThumbnailCache reopened = new ThumbnailCache(mDirectory, 250);
+        reopened.trim();
+        assertEquals(200, reopened.getSize());
+        assertFalse(reopened.getFile(nameB).exists());
+        assertNotNull(reopened.get(nameA));
+        assertNotNull(reopened.get(nameC));
+    }
+
+    @Test
+    public void filesAreAdoptedWithoutJournal() throws IOException {
+        String name = name(KEY_A, 1);
+        writeFile(new File(mDirectory, name), 70);
+        writeFile(new File(mDirectory, "other.txt"), 10);
+
+        ThumbnailCache cache = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        assertEquals(70, cache.getSize());
+        assertNotNull(cache.get(name));
+        assertTrue(new File(mDirectory, "other.txt").exists());
+    }
+
+    @Test
+    public void corruptJournalFallsBackToFiles() throws IOException {
+        ThumbnailCache cache = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        String name = name(KEY_A, 1);
+        write(cache, name, 80);
+
+        FileWriter writer = new FileWriter(new File(mDirectory, "thumbnail.journal"), true);
+        writer.write("PUT " + name(KEY_B, 1) + " not-a-number\n");
+        writer.close();
+
+        ThumbnailCache reopened = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        assertEquals(80, reopened.getSize());
+        assertNotNull(reopened.get(name));
+    }
+
+    @Test
+    public void legacyNamesAreRemovedOnOpen() throws IOException {
+        String unversioned = "0123456789abcdef0123456789abcdef.album";
+        String withoutTier = "0123456789abcdef0123456789abcdef_64-1.album";
+        String withoutEmbedded = "0123456789abcdef0123456789abcdef-180q75f2c3_64-1.album";
+        String current = name(KEY_A, 1);
+        writeFile(new File(mDirectory, unversioned), 10);
+        writeFile(new File(mDirectory, withoutTier), 20);
+        writeFile(new File(mDirectory, withoutEmbedded), 30);
+        writeFile(new File(mDirectory, current), 40);
+
+        ThumbnailCache cache = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        assertEquals(40, cache.getSize());
+        assertFalse(new File(mDirectory, unversioned).exists());
+        assertFalse(new File(mDirectory, withoutTier).exists());
+        assertFalse(new File(mDirectory, withoutEmbedded).exists());
+        assertTrue(new File(mDirectory, current).exists());
+
+        ThumbnailCache reopened = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        assertEquals(40, reopened.getSize());
+    }
+
+    @Test
+    public void leftoverTempFilesAreDeleted() throws IOException {
+        ThumbnailCache cache = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        File tempFile = cache.getTempFile(name(KEY_A, 1));
+        writeFile(tempFile, 10);
+
+        ThumbnailCache reopened = new ThumbnailCache(mDirectory, Long.MAX_VALUE);
+        assertEquals(0, reopened.getSize());
+        assertFalse(tempFile.exists());
+    }
+
+    private static String name(String key, long version) {
+        return key + ThumbnailCache.VERSION_SEPARATOR + "64-" + Long.toHexString(version) + ThumbnailCache.SUFFIX;
+    }
+
+    private static void write(ThumbnailCache cache, String name, int length) throws IOException {
+        File tempFile = cache.getTempFile(name);
+        writeFile(tempFile, length);
+        assertTrue(cache.commit(tempFile, name));
+    }
+
+    private static void writeFile(File file, int length) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(new byte[length]);
+        } finally {
+            outputStream.close();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 Yan Zhenjie.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yanzhenjie.album.app.album.data;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>The records of {@link ThumbnailPack}, how they are recovered when the pack is opened again and compacted.</p>
+ */
+public class ThumbnailPackTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mPackFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mPackFile = new File(mFolder.newFolder("pack"), "thumbnail.pack");
+    }
+
+    @Test
+    public void recordsAreReadAfterReopen() {
+        ThumbnailPack pack = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        pack.put("a", data(100, 1));
+        pack.put("b", data(200, 2));
+        assertArrayEquals(data(100, 1), pack.get("a"));
+
+        ThumbnailPack reopened = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        assertArrayEquals(data(100, 1), reopened.get("a"));
+        assertArrayEquals(data(200, 2), reopened.get("b"));
+        assertNull(reopened.get("c"));
+    }
+
+    @Test
+    public void lastRecordOfKeyWins() {
+        ThumbnailPack pack = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        pack.put("a", data(100, 1));
+        pack.put("a", data(50, 2));
+        pack.put("b", data(10, 3));
+        pack.remove("b");
+        assertArrayEquals(data(50, 2), pack.get("a"));
+        assertNull(pack.get("b"));
+
+        ThumbnailPack reopened = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        assertArrayEquals(data(50, 2), reopened.get("a"));
+        assertNull(reopened.get("b"));
+        assertEquals(pack.getSize(), reopened.getSize());
+    }
+
+    @Test
+    public void truncatedRecordIsDropped() throws IOException {
+        ThumbnailPack pack = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        pack.put("a", data(100, 1));
+        pack.put("b", data(100, 2));
+        long liveSize = pack.getSize();
+
+        RandomAccessFile file = new RandomAccessFile(mPackFile, "rw");
+        file.setLength(file.length() - 30);
+        file.close();
+
+        ThumbnailPack reopened = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        assertArrayEquals(data(100, 1), reopened.get("a"));
+        assertNull(reopened.get("b"));
+        assertEquals(liveSize / 2, reopened.getSize());
+
+        // The records appended after the truncated one are read after the next open.
+        reopened.put("c", data(20, 3));
+        ThumbnailPack again = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        assertArrayEquals(data(100, 1), again.get("a"));
+        assertArrayEquals(data(20, 3), again.get("c"));
+    }
+
+    @Test
+    public void recordWithUnwrittenDataIsDropped() throws IOException {
+        ThumbnailPack pack = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        pack.put("a", data(100, 1));
+        pack.put("b", data(100, 2));
+        pack.put("c", data(100, 3));
+
+        // The length of the last record reached the disk, its data did not.
+        RandomAccessFile file = new RandomAccessFile(mPackFile, "rw");
+        file.seek(file.length() - 100);
+        file.write(new byte[100]);
+        file.close();
+
+        ThumbnailPack reopened = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        assertArrayEquals(data(100, 1), reopened.get("a"));
+        assertArrayEquals(data(100, 2), reopened.get("b"));
+        assertNull(reopened.get("c"));
+
+        reopened.put("d", data(10, 4));
+        ThumbnailPack again = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        assertArrayEquals(data(100, 2), again.get("b"));
+        assertArrayEquals(data(10, 4), again.get("d"));
+        assertNull(again.get("c"));
+    }
+
+    @Test
+    public void foreignFileIsReset() throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(mPackFile);
+        outputStream.write(data(64, 7));
+        outputStream.close();
+
+        ThumbnailPack pack = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        assertEquals(0, pack.getSize());
+        pack.put("a", data(10, 1));
+
+        ThumbnailPack reopened = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        assertArrayEquals(data(10, 1), reopened.get("a"));
+    }
+
+    @Test
+    public void deadRecordsAreCompacted() {
+        ThumbnailPack pack = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        int length = 256 * 1024;
+        for (int i = 0; i < 16; i++) {
+            pack.put("a", data(length, i));
+        }
+        pack.put("b", data(100, 99));
+
+        // 16 records of 256K have been written, the dead ones are compacted once they outweigh the live one.
+        assertTrue(mPackFile.length() < 8L * length);
+        assertArrayEquals(data(length, 15), pack.get("a"));
+        assertArrayEquals(data(100, 99), pack.get("b"));
+
+        ThumbnailPack reopened = new ThumbnailPack(mPackFile, Long.MAX_VALUE);
+        assertArrayEquals(data(length, 15), reopened.get("a"));
+        assertArrayEquals(data(100, 99), reopened.get("b"));
+        assertEquals(pack.getSize(), reopened.getSize());
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        long recordSize = 12 + 1 + 1000;
+        ThumbnailPack pack = new ThumbnailPack(mPackFile, recordSize * 3);
+        pack.put("a", data(1000, 1));
+        pack.put("b", data(1000, 2));
+        pack.put("c", data(1000, 3));
+        assertNotNull(pack.get("a"));
+        pack.put("d", data(1000, 4));
+
+        assertNull(pack.get("b"));
+        assertNotNull(pack.get("a"));
+        assertNotNull(pack.get("c"));
+        assertNotNull(pack.get("d"));
+        assertEquals(recordSize * 3, pack.getSize());
+
+        ThumbnailPack reopened = new ThumbnailPack(mPackFile, recordSize * 3);
+        assertNull(reopened.get("b"));
+        assertArrayEquals(data(1000, 1), reopened.get("a"));
+    }
+
+    @Test
+    public void recordLargerThanBudgetIsDropped() {
+        ThumbnailPack pack = new ThumbnailPack(mPackFile, 500);
+        pack.put("a", data(100, 1));
+        pack.put("b", data(1000, 2));
+
+        assertNull(pack.get("b"));
+        assertArrayEquals(data(100, 1), pack.get("a"));
+    }
+
+    private static byte[] data(int length, int seed) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) seed);
+        if (length > 0) data[length - 1] = (byte) (seed + length);
+        return data;
+    }
+}